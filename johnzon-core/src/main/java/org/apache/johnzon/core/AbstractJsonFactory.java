@@ -19,21 +19,52 @@
 package org.apache.johnzon.core;
 
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 public abstract class AbstractJsonFactory implements Serializable{
 
     protected final Logger logger = Logger.getLogger(this.getClass().getName());
     
     public static final String BUFFER_STRATEGY = "org.apache.johnzon.buffer-strategy";
     public static final BufferStrategy DEFAULT_BUFFER_STRATEGY = BufferStrategy.QUEUE;
+
+    //register the BufferStats of the factory in the platform MBeanServer as
+    //org.apache.johnzon:type=BufferStats,factory=<factory class>-<id>,buffer=<name>
+    //they are unregistered by unregisterBufferStats() or by a daemon thread once the factory was garbage collected,
+    //so a factory which stays reachable (e.g. cached in a static field of an undeployed application) keeps them until then
+    public static final String BUFFER_STATS_JMX = "org.apache.johnzon.buffer-stats.jmx";
+    public static final boolean DEFAULT_BUFFER_STATS_JMX = Boolean.getBoolean(BUFFER_STATS_JMX); //default is false
     
     protected final Map<String, Object> internalConfig = new HashMap<String, Object>();
+
+    //the registrations of the factories which registered MBeans, only weakly referencing the factory
+    private static final ReferenceQueue<AbstractJsonFactory> COLLECTED_FACTORIES = new ReferenceQueue<AbstractJsonFactory>();
+    private static final Set<MBeanRegistration> MBEAN_REGISTRATIONS = Collections.synchronizedSet(new HashSet<MBeanRegistration>());
+    private static final AtomicInteger FACTORY_IDS = new AtomicInteger();
+
+    //waits for collected factories while there are registrations, guarded by MBEAN_REGISTRATIONS
+    private static Thread cleaner;
+
+    private final Map<String, BufferStats> bufferStats = new LinkedHashMap<String, BufferStats>();
+    private transient MBeanRegistration mbeanRegistration;
     
     protected AbstractJsonFactory(final Map<String, ?> config, Collection<String> supportedConfigKeys, Collection<String> defaultSupportedConfigKeys) {
         if(config != null) {
@@ -61,6 +92,102 @@ public abstract class AbstractJsonFactory implements Serializable{
         return DEFAULT_BUFFER_STRATEGY;
     }
 
+    //the stats of the buffer providers of this factory by their name, e.g. "char" for the read/write buffers
+    public Map<String, BufferStats> getBufferStats() {
+        return Collections.unmodifiableMap(bufferStats);
+    }
+
+    //remember the stats of a provider of this factory and register them if BUFFER_STATS_JMX is set
+    protected <T> BufferStrategy.BufferProvider<T> instrument(final String name, final BufferStrategy.BufferProvider<T> provider) {
+        if (!BufferStrategy.InstrumentedBufferProvider.class.isInstance(provider)) {
+            return provider;
+        }
+        final BufferStats stats = BufferStrategy.InstrumentedBufferProvider.class.cast(provider).getStats();
+        bufferStats.put(name, stats);
+        if (getBool(BUFFER_STATS_JMX, DEFAULT_BUFFER_STATS_JMX)) {
+            if (mbeanRegistration == null) {
+                mbeanRegistration = new MBeanRegistration(this);
+                addRegistration(mbeanRegistration);
+            }
+            try {
+                final ObjectName objectName = bufferStatsName(name);
+                ManagementFactory.getPlatformMBeanServer().registerMBean(stats, objectName);
+                mbeanRegistration.names.add(objectName);
+            } catch (final Exception e) {
+                logger.warning("Can't register the buffer stats " + name + ": " + e.getMessage());
+            }
+        }
+        return provider;
+    }
+
+    //the name of the MBean of the stats of a buffer provider of this factory, see BUFFER_STATS_JMX
+    ObjectName bufferStatsName(final String name) throws Exception {
+        return new ObjectName("org.apache.johnzon:type=BufferStats,factory=" + getClass().getSimpleName() + '-'
+                + mbeanRegistration.id + ",buffer=" + name);
+    }
+
+    //unregister the MBeans of this factory now instead of when it is garbage collected, see BUFFER_STATS_JMX
+    //the stats are still available with getBufferStats() afterwards
+    public void unregisterBufferStats() {
+        final MBeanRegistration registration = mbeanRegistration;
+        if (registration != null) {
+            registration.clear(); // not enqueued anymore
+            unregister(registration);
+        }
+    }
+
+    private static void addRegistration(final MBeanRegistration registration) {
+        synchronized (MBEAN_REGISTRATIONS) {
+            MBEAN_REGISTRATIONS.add(registration);
+            if (cleaner == null) {
+                cleaner = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        unregisterCollectedFactories();
+                    }
+                }, "johnzon-buffer-stats-cleaner");
+                cleaner.setDaemon(true);
+                cleaner.setContextClassLoader(null); // don't pin the classloader of the first caller
+                cleaner.start();
+            }
+        }
+    }
+
+    //runs in the cleaner thread, which stops once all registrations are gone so it doesn't outlive the last factory
+    private static void unregisterCollectedFactories() {
+        while (true) {
+            try {
+                final Reference<? extends AbstractJsonFactory> collected = COLLECTED_FACTORIES.remove(1000);
+                if (collected != null) {
+                    unregister(MBeanRegistration.class.cast(collected));
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (MBEAN_REGISTRATIONS) {
+                if (MBEAN_REGISTRATIONS.isEmpty() || Thread.currentThread().isInterrupted()) {
+                    cleaner = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void unregister(final MBeanRegistration registration) {
+        MBEAN_REGISTRATIONS.remove(registration);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (registration.names) {
+            for (final ObjectName name : registration.names) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (final Exception e) {
+                    // already unregistered
+                }
+            }
+            registration.names.clear();
+        }
+    }
+
     protected int getInt(final String key, final int defaultValue) {
         final Object intValue = internalConfig.get(key);
         if (intValue == null) {
@@ -81,4 +208,13 @@ public abstract class AbstractJsonFactory implements Serializable{
         return Boolean.parseBoolean(boolValue.toString());
     }
 
+    //the unique id keeps the names of the factories apart, the identity hash code can collide
+    private static class MBeanRegistration extends WeakReference<AbstractJsonFactory> {
+        private final int id = FACTORY_IDS.incrementAndGet();
+        private final List<ObjectName> names = Collections.synchronizedList(new ArrayList<ObjectName>());
+
+        private MBeanRegistration(final AbstractJsonFactory factory) {
+            super(factory, COLLECTED_FACTORIES);
+        }
+    }
 }
@@ -0,0 +1,1286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.NoSuchElementException;
+
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParsingException;
+
+//This class represents either the Json tokenizer and the Json parser.
+//It is independent of the kind of input, subclasses own the main buffer (chars or bytes),
+//know how to refill it and how to turn a range of it into a value.
+abstract class AbstractJsonStreamParser implements JsonChars, JohnzonJsonParser {
+
+    //10^0 till 10^22 are exactly representable as double
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+    private static final double[] EXACT_POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+    static final long INEXACT_DECIMAL = Long.MIN_VALUE;
+
+    static {
+        EXACT_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < EXACT_POWERS_OF_TEN.length; i++) {
+            EXACT_POWERS_OF_TEN[i] = EXACT_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    //current parser position within the buffer
+    //Initial MIN_VALUE will trigger buffer refill, normally bufferPos is >= -1
+    //-1 would cause a re-read of the first character in the buffer (which is at zero index)
+    int bufferPos = Integer.MIN_VALUE;
+
+    //available character in the buffer. It might be <= "buffer.length".
+    int availableCharsInBuffer;
+
+    //start and end position of values in the buffer
+    //may cross boundaries, then value is in fallBackCopyBuffer
+    int startOfValueInBuffer = -1;
+    int endOfValueInBuffer = -1;
+
+    private final BufferStrategy.BufferProvider<char[]> valueProvider;
+
+    //canonical key name instances shared by the parsers of a factory, null if disabled
+    private final SymbolTable symbolTable;
+
+    //max length for strings and numbers (max count of characters)
+    final int maxValueLength;
+
+    //we use a byte here, because comparing bytes
+    //is more efficient than comparing enums
+    //Additionally we handle internally two more event: COMMA_EVENT and KEY_SEPARATOR_EVENT
+    private byte previousEvent;
+
+    //this buffer is used to store current String or Number value in case that
+    //within the value a buffer boundary is crossed or the string contains escaped characters
+    //it starts with the size of the pooled value buffer and grows on demand up to maxValueLength
+    char[] fallBackCopyBuffer;
+    int fallBackCopyBufferLength;
+
+    //the buffer we got from the valueProvider, only this one goes back to the pool
+    //a grown fallBackCopyBuffer is left to the gc so the pool keeps right-sized buffers
+    private final char[] pooledValueBuffer;
+
+    // location (line, column, offset)
+    // We try to calculate this efficiently so we do not just increment the values per char read
+    // Instead we calculate the column and offset relative to the pastBufferReadCount and/or lastLineBreakPosition.
+    private long currentLine = 1;
+    private long lastLineBreakPosition;
+    long pastBufferReadCount;
+
+    //cache (if current value is a number) integral state and the number itself if its only one digit
+    private boolean isCurrentNumberIntegral = true;
+    private int currentIntegralNumber = Integer.MIN_VALUE; //for number from 0 - 9
+
+    //maybe we want also cache BigDecimals
+    //private BigDecimal currentBigDecimalNumber = null;
+
+    //We need a stack if we want detect bad formatted Json do determine if we are within an array or not
+    //example
+    //     Streamparser sees: ],1  <-- we look from here
+    //the 1 is only allowed if we are within an array
+    //This can only be determined by build up a stack which tracks the trail of Json objects and arrays
+    //This stack here is only needed for validating the above mentioned case, if we want to be lenient we can skip suing the stack.
+    //Stack can cause out of memory issues when the nesting depth of a Json stream is too deep.
+    private StructureElement currentStructureElement = null;
+
+    //reused view of the current value, see getCharSequence()
+    private final CharRange currentValue = new CharRange();
+
+    //minimal stack implementation
+    private static final class StructureElement {
+        final StructureElement previous;
+        final boolean isArray;
+
+        StructureElement(final StructureElement previous, final boolean isArray) {
+            super();
+            this.previous = previous;
+            this.isArray = isArray;
+        }
+    }
+
+    AbstractJsonStreamParser(final int maxStringLength, final SymbolTable symbolTable, final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+        this.maxValueLength = maxStringLength <= 0 ? 8192 : maxStringLength;
+        this.pooledValueBuffer = valueBuffer.newBuffer();
+        this.fallBackCopyBuffer = pooledValueBuffer;
+        this.valueProvider = valueBuffer;
+        this.symbolTable = symbolTable;
+
+        if (fallBackCopyBuffer.length == 0) {
+            throw cust("Size of value buffer cannot be zero");
+        }
+    }
+
+    //read the next char from the stream and set/increment the bufferPos
+    //will also refill buffer if necessary
+    //if we are currently processing a value (string or number) and buffer
+    //refill is necessary copy the already read value part into the value buffer
+    protected abstract char readNextChar();
+
+    //the char at bufferPos
+    abstract char currentChar();
+
+    //move bufferPos over the following ordinary string chars (no quote, backslash or control char) in the buffer
+    //bufferPos is left on the last of them, the buffer is never refilled here
+    abstract void skipStringChars();
+
+    //copy content between "start" and "end" from buffer to value buffer
+    //and reset "start" and "end"
+    abstract void copyCurrentValue();
+
+    //the current value if it is still within the main buffer (between "start" and "end")
+    abstract String bufferValueAsString();
+
+    //the current key name if it is still within the main buffer, looked up in the symbol table
+    abstract String bufferValueAsKey(SymbolTable symbols);
+
+    abstract Integer bufferValueAsInteger();
+
+    abstract Long bufferValueAsLong();
+
+    abstract BigDecimal bufferValueAsBigDecimal();
+
+    //point the range to the chars of the current value if it is still within the main buffer
+    abstract void bufferValueAsChars(CharRange range);
+
+    //compare the current value with the given chars if it is still within the main buffer
+    abstract boolean bufferValueEquals(char[] chars);
+
+    //release the main buffer and close the underlying input
+    abstract void closeInput() throws IOException;
+
+    //append a single char to the value buffer
+    final void appendToCopyBuffer(final char c) {
+        if (fallBackCopyBufferLength == fallBackCopyBuffer.length) {
+            ensureCopyBufferCapacity(1);
+        }
+        fallBackCopyBuffer[fallBackCopyBufferLength++] = c;
+    }
+
+    //make sure "additional" chars fit into the value buffer
+    //the buffer grows geometrically but never beyond maxValueLength
+    final void ensureCopyBufferCapacity(final int additional) {
+        final int required = fallBackCopyBufferLength + additional;
+
+        if (required > maxValueLength || required < 0) {
+            throw tmc();
+        }
+
+        if (required > fallBackCopyBuffer.length) {
+            int newLength = fallBackCopyBuffer.length << 1;
+            if (newLength < required || newLength < 0) {
+                newLength = required;
+            }
+            if (newLength > maxValueLength) {
+                newLength = maxValueLength;
+            }
+
+            final char[] newBuffer = new char[newLength];
+            System.arraycopy(fallBackCopyBuffer, 0, newBuffer, 0, fallBackCopyBufferLength);
+            fallBackCopyBuffer = newBuffer;
+        }
+    }
+
+    @Override
+    public final boolean hasNext() {
+
+        if (currentStructureElement != null || (previousEvent != END_ARRAY && previousEvent != END_OBJECT) || previousEvent == 0) {
+            return true;
+        }
+
+        //detect garbage at the end of the file after last object or array is closed
+        if (isTrailingInputAvailable()) {
+
+            final char c = readNextNonWhitespaceChar(readNextChar());
+
+            if (c == EOF) {
+                return false;
+            }
+
+            if (bufferPos < availableCharsInBuffer) {
+                throw uexc("EOF expected");
+            }
+
+        }
+
+        return false;
+
+    }
+
+    //the offset of buffer[index] in the input in chars, the byte parsers count the decoded chars
+    long position(final int index) {
+        return pastBufferReadCount + index;
+    }
+
+    //the count of chars of buffer[start, end), the byte parsers decode it
+    int valueLength(final int start, final int end) {
+        return end - start;
+    }
+
+    //whether hasNext() can read the input after the closed document to check it for garbage
+    boolean isTrailingInputAvailable() {
+        return bufferPos < availableCharsInBuffer - 2;
+    }
+
+    private static boolean isAsciiDigit(final char value) {
+        return value <= NINE && value >= ZERO;
+    }
+
+    //check if value is a valid hex digit and return the numeric value
+    private int parseHexDigit(final char value) {
+
+        if (isAsciiDigit(value)) {
+            return value - 48;
+        } else if (value <= 'f' && value >= 'a') {
+            return (value) - 87;
+        } else if ((value <= 'F' && value >= 'A')) {
+            return (value) - 55;
+        } else {
+            throw uexc("Invalid hex character");
+        }
+    }
+
+    private JsonLocation createLocation() {
+
+        //we start with column = 1, so column is always >= 1
+        //APi is not clear in this, but starting column with 1 is convenient
+        long column = 1;
+        long charOffset = 0;
+
+        if (bufferPos >= -1) {
+
+            charOffset = position(bufferPos) + 1;
+            column = lastLineBreakPosition == 0 ? charOffset + 1 : charOffset - lastLineBreakPosition;
+        }
+
+        //For now its unclear how to calculate offset for (byte) inputsream.
+        //API says count bytes but thats dependent on encoding and not efficient
+        //skip this for now, count always bytes and defer this until the JSR TCK arrives.
+
+        return new JsonLocationImpl(currentLine, column, charOffset);
+    }
+
+    //skip whitespaces
+    //tracks location informations (line, column)
+    //returns the first non whitespace character
+    protected final char readNextNonWhitespaceChar(char c) {
+
+        int dosCount = 0;
+
+        while (c == SPACE || c == TAB || c == CR || c == EOL) {
+
+            if (c == EOL) {
+                currentLine++;
+                lastLineBreakPosition = position(bufferPos);
+            }
+
+            //prevent DOS (denial of service) attack
+            if (dosCount >= maxValueLength) {
+                throw tmc();
+            }
+            dosCount++;
+
+            //read next character
+            c = readNextChar();
+
+        }
+
+        return c;
+    }
+
+    @Override
+    public final Event next() {
+        //main entry, make decision how to handle the current character in the stream
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        if (previousEvent != 0 && currentStructureElement == null) {
+            throw uexc("Unexpected end of structure");
+        }
+
+        final char c = readNextNonWhitespaceChar(readNextChar());
+
+        if (c == COMMA_CHAR) {
+
+            //last event must one of the following-> " ] } LITERAL
+            if (previousEvent == START_ARRAY || previousEvent == START_OBJECT || previousEvent == COMMA_EVENT || previousEvent == KEY_NAME) {
+                throw uexc("Expected \" ] } LITERAL");
+            }
+
+            previousEvent = COMMA_EVENT;
+            return next();
+
+        }
+
+        if (c == KEY_SEPARATOR) {
+
+            if (previousEvent != KEY_NAME) {
+                throw uexc("A : can only follow a key name");
+            }
+
+            previousEvent = KEY_SEPARATOR_EVENT;
+            return next();
+
+        }
+
+        if (!isCurrentNumberIntegral) {
+            isCurrentNumberIntegral = true;
+        }
+        //        if (currentBigDecimalNumber != null) {
+        //            currentBigDecimalNumber = null;
+        //        }
+        if (currentIntegralNumber != Integer.MIN_VALUE) {
+            currentIntegralNumber = Integer.MIN_VALUE;
+        }
+
+        if (fallBackCopyBufferLength != 0) {
+            fallBackCopyBufferLength = 0;
+        }
+
+        startOfValueInBuffer = endOfValueInBuffer = -1;
+
+        switch (c) {
+
+            case START_OBJECT_CHAR:
+
+                return handleStartObject();
+
+            case END_OBJECT_CHAR:
+
+                return handleEndObject();
+
+            case START_ARRAY_CHAR:
+
+                return handleStartArray();
+
+            case END_ARRAY_CHAR:
+
+                return handleEndArray();
+
+            case QUOTE_CHAR:
+
+                return handleQuote();
+
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+            case MINUS:
+            case FALSE_F: // false
+            case TRUE_T: // true
+            case NULL_N: // null
+
+                return handleLiteral();
+
+            default:
+
+                return defaultHandling(c);
+        }
+    }
+
+    protected Event defaultHandling(char c) {
+        if (c == EOF) {
+            throw uexc("End of file hit too early");
+        }
+        throw uexc("Expected structural character or digit or 't' or 'n' or 'f' or '-'");
+    }
+
+    private Event handleStartObject() {
+
+        //last event must one of the following-> : , [
+        if (previousEvent != 0 && previousEvent != KEY_SEPARATOR_EVENT && previousEvent != START_ARRAY && previousEvent != COMMA_EVENT) {
+            throw uexc("Expected : , [");
+        }
+
+        //push upon the stack
+        if (currentStructureElement == null) {
+            currentStructureElement = new StructureElement(null, false);
+        } else {
+            final StructureElement localStructureElement = new StructureElement(currentStructureElement, false);
+            currentStructureElement = localStructureElement;
+        }
+
+        return EVT_MAP[previousEvent = START_OBJECT];
+
+    }
+
+    private Event handleEndObject() {
+
+        //last event must one of the following-> " ] { } LITERAL
+        if (previousEvent == START_ARRAY || previousEvent == COMMA_EVENT || previousEvent == KEY_NAME
+                || previousEvent == KEY_SEPARATOR_EVENT || currentStructureElement == null) {
+            throw uexc("Expected \" ] { } LITERAL");
+        }
+
+        if (currentStructureElement.isArray) {
+            throw uexc("Expected : ]");
+        }
+
+        //pop from stack
+        currentStructureElement = currentStructureElement.previous;
+
+        return EVT_MAP[previousEvent = END_OBJECT];
+    }
+
+    private Event handleStartArray() {
+
+        //last event must one of the following-> : , [
+        if (previousEvent != 0 && previousEvent != KEY_SEPARATOR_EVENT && previousEvent != START_ARRAY && previousEvent != COMMA_EVENT) {
+            throw uexc("Expected : , [");
+        }
+
+        //push upon the stack
+        if (currentStructureElement == null) {
+            currentStructureElement = new StructureElement(null, true);
+        } else {
+            final StructureElement localStructureElement = new StructureElement(currentStructureElement, true);
+            currentStructureElement = localStructureElement;
+        }
+
+        return EVT_MAP[previousEvent = START_ARRAY];
+    }
+
+    private Event handleEndArray() {
+
+        //last event must one of the following-> [ ] } " LITERAL
+        if (previousEvent == START_OBJECT || previousEvent == COMMA_EVENT || previousEvent == KEY_SEPARATOR_EVENT
+                || currentStructureElement == null) {
+            throw uexc("Expected [ ] } \" LITERAL");
+        }
+
+        if (!currentStructureElement.isArray) {
+            throw uexc("Expected : }");
+        }
+
+        //pop from stack
+        currentStructureElement = currentStructureElement.previous;
+
+        return EVT_MAP[previousEvent = END_ARRAY];
+    }
+
+    //read a string, gets called recursively
+    //Handles escape/d characters
+    //if string contains escape chars and/or cross buffer boundary then copy in the value buffer
+    //if not then denote string start and end in startOfValueInBuffer and endOfValueInBuffer and read directly from buffer
+    private void readString() {
+
+        do {
+            char n = readNextChar();
+            //when first called n its first char after the starting quote
+            //after that its the next character after the while loop below
+
+            if (n == QUOTE_CHAR) {
+                endOfValueInBuffer = startOfValueInBuffer = bufferPos; //->"" case
+                return;
+            } else if (n == EOL) {
+                throw uexc("Unexpected linebreak");
+
+            } else if (/* n >= '\u0000' && */ n <= '\u001F') {
+                throw uexc("Unescaped control character");
+
+            } else if (n == ESCAPE_CHAR) {
+
+                n = readNextChar();
+
+                //  \ u XXXX -> unicode char
+                if (n == 'u') {
+                    n = parseUnicodeHexChars();
+                    appendToCopyBuffer(n);
+
+                    // \\ -> \
+                } else if (n == ESCAPE_CHAR) {
+                    appendToCopyBuffer(n);
+
+                    //another escape chars, for example \t
+                } else {
+                    appendToCopyBuffer(Strings.asEscapedChar(n));
+
+                }
+
+            } else {
+
+                startOfValueInBuffer = bufferPos;
+                endOfValueInBuffer = -1;
+
+                do {
+                    //read fast, ordinary chars are accepted in bulk until the end of the buffer
+                    skipStringChars();
+                } while ((n = readNextChar()) > '\u001F' && n != ESCAPE_CHAR && n != EOL && n != QUOTE_CHAR);
+
+                endOfValueInBuffer = bufferPos;
+
+                if (n == QUOTE_CHAR) {
+
+                    if (fallBackCopyBufferLength > 0) {
+                        copyCurrentValue();
+                    } else {
+                        if ((endOfValueInBuffer - startOfValueInBuffer) > maxValueLength
+                                && valueLength(startOfValueInBuffer, endOfValueInBuffer) > maxValueLength) {
+                            throw tmc();
+                        }
+
+                    }
+
+                    return;
+                } else if (n == EOL) {
+                    throw uexc("Unexpected linebreak");
+
+                } else if (n >= '\u0000' && n <= '\u001F') {
+                    throw uexc("Unescaped control character");
+                }
+
+                copyCurrentValue();
+
+                //current n is one of < '\u001F' -OR- ESCAPE_CHAR -OR- EOL -OR- QUOTE
+
+                bufferPos--; //unread one char
+
+            }
+        }  while (true);
+
+        // before this do while(true) it was:
+        //
+        //recurse until string is terminated by a non escaped quote
+        //readString();
+        //
+        //
+        // but recursive = can't read big strings
+
+    }
+
+    //maybe we want to check invalid utf encoding
+    //not clear yet if the InputStreamReader is doing that
+
+    /*
+    private char checkSurrogates(char n, char highSurrogate) {
+        //check for invalid surrogates
+        //high followed by low
+        if (Character.isHighSurrogate(n)) {
+
+            if (highSurrogate != 0) {
+                throw uexc("Unexpected high surrogate");
+            }
+            return n;
+        } else if (Character.isLowSurrogate(n)) {
+
+            if (highSurrogate == 0) {
+                throw uexc("Unexpected low surrogate");
+            } else if (!Character.isSurrogatePair(highSurrogate, n)) {
+                throw uexc("Invalid surrogate pair");
+            }
+            return 0;
+        } else if (highSurrogate != 0 && !Character.isLowSurrogate(n)) {
+            throw uexc("Expected low surrogate");
+        }
+
+        return highSurrogate;
+    }*/
+
+    //read the next four chars, check them and treat them as an single unicode char
+    private char parseUnicodeHexChars() {
+        // \u08Ac etc       
+        return (char) (((parseHexDigit(readNextChar())) * 4096) + ((parseHexDigit(readNextChar())) * 256)
+                + ((parseHexDigit(readNextChar())) * 16) + ((parseHexDigit(readNextChar()))));
+
+    }
+
+    private Event handleQuote() {
+
+        //always the beginning quote of a key or value
+
+        //last event must one of the following-> : { [ ,
+        if (previousEvent != KEY_SEPARATOR_EVENT && previousEvent != START_OBJECT && previousEvent != START_ARRAY
+                && previousEvent != COMMA_EVENT) {
+            throw uexc("Expected : { [ ,");
+        }
+        //starting quote already consumed
+        readString();
+        //end quote already consumed
+
+        //make the decision if its an key or value
+        if (previousEvent == KEY_SEPARATOR_EVENT) {
+            //must be value
+
+            if (currentStructureElement != null && currentStructureElement.isArray) {
+                //not in array, only allowed within array
+                throw uexc("Key value pair not allowed in an array");
+            }
+
+            return EVT_MAP[previousEvent = VALUE_STRING];
+
+        } else { //Event is  START_OBJECT  OR START_ARRAY OR COMMA_EVENT
+            //must be a key if we are in an object, if not its a value
+
+            if (currentStructureElement != null && currentStructureElement.isArray) {
+                return EVT_MAP[previousEvent = VALUE_STRING];
+            }
+
+            return EVT_MAP[previousEvent = KEY_NAME];
+        }
+
+    }
+
+    //read a number
+    //if a number cross buffer boundary then copy in the value buffer
+    //if not then denote string start and end in startOfValueInBuffer and endOfValueInBuffer and read directly from buffer
+    private void readNumber() {
+
+        char c = currentChar();
+
+        //start can change on any read() if we cross buffer boundary
+        startOfValueInBuffer = bufferPos;
+        endOfValueInBuffer = -1;
+
+        char y = EOF;
+
+        //sum up the digit values
+        int cumulatedDigitValue = 0;
+        while (isAsciiDigit(y = readNextChar())) {
+
+            if (c == ZERO) {
+                throw uexc("Leading zeros not allowed");
+            }
+
+            if (c == MINUS && cumulatedDigitValue == 48) {
+                throw uexc("Leading zeros after minus not allowed");
+            }
+
+            cumulatedDigitValue += y;
+
+        }
+
+        if (c == MINUS && cumulatedDigitValue == 0) {
+
+            throw uexc("Unexpected premature end of number");
+        }
+
+        if (y == DOT) {
+            isCurrentNumberIntegral = false;
+            cumulatedDigitValue = 0;
+            while (isAsciiDigit(y = readNextChar())) {
+                cumulatedDigitValue++;
+            }
+
+            if (cumulatedDigitValue == 0) {
+
+                throw uexc("Unexpected premature end of number");
+            }
+
+        }
+
+        if (y == EXP_LOWERCASE || y == EXP_UPPERCASE) {
+            isCurrentNumberIntegral = false;
+
+            y = readNextChar(); //+ or - or digit
+
+            if (!isAsciiDigit(y) && y != MINUS && y != PLUS) {
+                throw uexc("Expected DIGIT or + or -");
+            }
+
+            if (y == MINUS || y == PLUS) {
+                y = readNextChar();
+                if (!isAsciiDigit(y)) {
+                    throw uexc("Unexpected premature end of number");
+                }
+
+            }
+
+            while (isAsciiDigit(y = readNextChar())) {
+                //no-op
+            }
+
+        }
+
+        endOfValueInBuffer = bufferPos;
+
+        if (y == COMMA_CHAR || y == END_ARRAY_CHAR || y == END_OBJECT_CHAR || y == EOL || y == SPACE || y == TAB || y == CR) {
+
+            bufferPos--;//unread one char
+
+            //['-', DIGIT]
+            if (isCurrentNumberIntegral && c == MINUS && cumulatedDigitValue >= 48 && cumulatedDigitValue <= 57) {
+
+                currentIntegralNumber = -(cumulatedDigitValue - 48); //optimize -0 till -9
+                return;
+            }
+
+            //[DIGIT]
+            if (isCurrentNumberIntegral && c != MINUS && cumulatedDigitValue == 0) {
+
+                currentIntegralNumber = (c - 48); //optimize 0 till 9
+                return;
+            }
+
+            if (fallBackCopyBufferLength > 0) {
+
+                //we crossed a buffer boundary, use value buffer
+                copyCurrentValue();
+
+            } else {
+                if ((endOfValueInBuffer - startOfValueInBuffer) >= maxValueLength) {
+                    throw tmc();
+                }
+            }
+
+            return;
+
+        }
+
+        throw uexc("Unexpected premature end of number");
+
+    }
+
+    //handles false, true, null and numbers
+    private Event handleLiteral() {
+
+        //last event must one of the following-> : , [
+        if (previousEvent != KEY_SEPARATOR_EVENT && previousEvent != START_ARRAY && previousEvent != COMMA_EVENT) {
+            throw uexc("Expected : , [");
+        }
+
+        if (previousEvent == COMMA_EVENT && !currentStructureElement.isArray) {
+            //only allowed within array
+            throw uexc("Not in an array context");
+        }
+
+        char c = currentChar();
+
+        // probe literals
+        switch (c) {
+            case TRUE_T:
+
+                if (readNextChar() != TRUE_R || readNextChar() != TRUE_U || readNextChar() != TRUE_E) {
+                    throw uexc("Expected LITERAL: true");
+                }
+                return EVT_MAP[previousEvent = VALUE_TRUE];
+            case FALSE_F:
+
+                if (readNextChar() != FALSE_A || readNextChar() != FALSE_L || readNextChar() != FALSE_S || readNextChar() != FALSE_E) {
+                    throw uexc("Expected LITERAL: false");
+                }
+
+                return EVT_MAP[previousEvent = VALUE_FALSE];
+
+            case NULL_N:
+
+                if (readNextChar() != NULL_U || readNextChar() != NULL_L || readNextChar() != NULL_L) {
+                    throw uexc("Expected LITERAL: null");
+                }
+                return EVT_MAP[previousEvent = VALUE_NULL];
+
+            default:
+                readNumber();
+                return EVT_MAP[previousEvent = VALUE_NUMBER];
+        }
+
+    }
+
+    @Override
+    public String getString() {
+        if (previousEvent == KEY_NAME && symbolTable != null) {
+
+            //if there a content in the value buffer read from them, if not use main buffer
+            return fallBackCopyBufferLength > 0 ? symbolTable.get(fallBackCopyBuffer, 0, fallBackCopyBufferLength)
+                    : bufferValueAsKey(symbolTable);
+        } else if (previousEvent == KEY_NAME || previousEvent == VALUE_STRING || previousEvent == VALUE_NUMBER) {
+
+            //if there a content in the value buffer read from them, if not use main buffer
+            return fallBackCopyBufferLength > 0 ? new String(fallBackCopyBuffer, 0, fallBackCopyBufferLength) : bufferValueAsString();
+        } else {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getString()");
+        }
+    }
+
+    @Override
+    public CharSequence getCharSequence() {
+        if (previousEvent == KEY_NAME || previousEvent == VALUE_STRING || previousEvent == VALUE_NUMBER) {
+
+            return currentValueChars();
+        } else {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getCharSequence()");
+        }
+    }
+
+    private CharRange currentValueChars() {
+        //if there a content in the value buffer read from them, if not use main buffer
+        if (fallBackCopyBufferLength > 0) {
+            currentValue.reset(fallBackCopyBuffer, 0, fallBackCopyBufferLength);
+        } else {
+            bufferValueAsChars(currentValue);
+        }
+        return currentValue;
+    }
+
+    @Override
+    public boolean isCurrentValue(final char[] chars) {
+        if (previousEvent == KEY_NAME || previousEvent == VALUE_STRING || previousEvent == VALUE_NUMBER) {
+
+            //if there a content in the value buffer read from them, if not use main buffer
+            if (fallBackCopyBufferLength > 0) {
+                return rangeEquals(fallBackCopyBuffer, 0, fallBackCopyBufferLength, chars);
+            }
+            return bufferValueEquals(chars);
+        } else {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support isCurrentValue()");
+        }
+    }
+
+    @Override
+    public void skipChildren() {
+        if (previousEvent != START_OBJECT && previousEvent != START_ARRAY) {
+            return;
+        }
+
+        if (fallBackCopyBufferLength != 0) {
+            fallBackCopyBufferLength = 0;
+        }
+
+        //so the value is not copied to the value buffer when the main buffer is refilled
+        startOfValueInBuffer = endOfValueInBuffer = -1;
+
+        skipStructure();
+    }
+
+    //fast scan to the end of the current object or array by counting brackets
+    //only strings need special care since they may contain brackets
+    //pops the structure from the stack and sets the matching END_OBJECT or END_ARRAY event
+    void skipStructure() {
+        int depth = 1;
+
+        while (true) {
+            final char c = readNextChar();
+
+            switch (c) {
+                case QUOTE_CHAR:
+                    skipString();
+                    break;
+                case START_OBJECT_CHAR:
+                case START_ARRAY_CHAR:
+                    depth++;
+                    break;
+                case END_OBJECT_CHAR:
+                case END_ARRAY_CHAR:
+                    if (--depth == 0) {
+                        if (currentStructureElement.isArray != (c == END_ARRAY_CHAR)) {
+                            throw uexc(currentStructureElement.isArray ? "Expected : ]" : "Expected : }");
+                        }
+
+                        //pop from stack
+                        currentStructureElement = currentStructureElement.previous;
+                        previousEvent = c == END_ARRAY_CHAR ? END_ARRAY : END_OBJECT;
+                        return;
+                    }
+                    break;
+                case EOL:
+                    currentLine++;
+                    lastLineBreakPosition = position(bufferPos);
+                    break;
+                case EOF:
+                    if (availableCharsInBuffer <= 0) {
+                        throw uexc("End of file hit too early");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    //skip everything up to (and including) the closing quote, escaped chars are skipped as well
+    private void skipString() {
+        while (true) {
+            final char c = readNextChar();
+
+            if (c == QUOTE_CHAR) {
+                return;
+            } else if (c == ESCAPE_CHAR) {
+                readNextChar();
+            } else if (c == EOF && availableCharsInBuffer <= 0) {
+                throw uexc("End of file hit too early");
+            }
+        }
+    }
+
+    @Override
+    public boolean isIntegralNumber() {
+
+        if (previousEvent != VALUE_NUMBER) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support isIntegralNumber()");
+        } else {
+            return isCurrentNumberIntegral;
+        }
+    }
+
+    @Override
+    public int getInt() {
+        if (previousEvent != VALUE_NUMBER) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getInt()");
+        } else if (isCurrentNumberIntegral && currentIntegralNumber != Integer.MIN_VALUE) {
+            return currentIntegralNumber;
+        } else if (isCurrentNumberIntegral) {
+            //if there a content in the value buffer read from them, if not use main buffer
+            final Integer retVal = fallBackCopyBufferLength > 0 ? parseIntegerFromChars(fallBackCopyBuffer, 0, fallBackCopyBufferLength)
+                    : bufferValueAsInteger();
+            if (retVal == null) {
+                return getBigDecimal().intValue();
+            } else {
+                return retVal.intValue();
+            }
+        } else {
+            return getBigDecimal().intValue();
+        }
+    }
+
+    @Override
+    public long getLong() {
+        if (previousEvent != VALUE_NUMBER) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getLong()");
+        } else if (isCurrentNumberIntegral && currentIntegralNumber != Integer.MIN_VALUE) {
+            return currentIntegralNumber;
+        } else if (isCurrentNumberIntegral) {
+            //if there a content in the value buffer read from them, if not use main buffer
+            final Long retVal = fallBackCopyBufferLength > 0 ? parseLongFromChars(fallBackCopyBuffer, 0, fallBackCopyBufferLength)
+                    : bufferValueAsLong();
+            if (retVal == null) {
+                return getBigDecimal().longValue();
+            } else {
+                return retVal.longValue();
+            }
+        } else {
+            return getBigDecimal().longValue();
+        }
+
+    }
+
+    @Override
+    public BigDecimal getBigDecimal() {
+        if (previousEvent != VALUE_NUMBER) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getBigDecimal()");
+            //        } else if (currentBigDecimalNumber != null) {
+            //            return currentBigDecimalNumber;
+        } else if (isCurrentNumberIntegral && currentIntegralNumber != Integer.MIN_VALUE) {
+            return new BigDecimal(currentIntegralNumber);
+        } else if (isCurrentNumberIntegral) {
+            //if there a content in the value buffer read from them, if not use main buffer
+            final Long retVal = fallBackCopyBufferLength > 0 ? parseLongFromChars(fallBackCopyBuffer, 0, fallBackCopyBufferLength)
+                    : bufferValueAsLong();
+            if (retVal == null) {
+                return (/*currentBigDecimalNumber = */fallBackCopyBufferLength > 0 ? new BigDecimal(fallBackCopyBuffer, 0,
+                        fallBackCopyBufferLength) : bufferValueAsBigDecimal());
+            } else {
+                return (/*currentBigDecimalNumber = */new BigDecimal(retVal.longValue()));
+            }
+        } else {
+            //if there a content in the value buffer read from them, if not use main buffer
+            return (/*currentBigDecimalNumber = */fallBackCopyBufferLength > 0 ? new BigDecimal(fallBackCopyBuffer, 0,
+                    fallBackCopyBufferLength) : bufferValueAsBigDecimal());
+        }
+
+    }
+
+    @Override
+    public double getDouble() {
+        if (previousEvent != VALUE_NUMBER) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getDouble()");
+        } else if (isCurrentNumberIntegral && currentIntegralNumber != Integer.MIN_VALUE && currentIntegralNumber != 0) {
+            return currentIntegralNumber; //0 is not taken from the cache, it may be -0
+        }
+
+        final CharRange number = currentValueChars();
+        final long decimal = scanDecimal(number.chars, number.offset, number.offset + number.length);
+        if (decimal != INEXACT_DECIMAL) {
+            return decimalAsDouble(decimal);
+        }
+        return Double.parseDouble(number.toString());
+    }
+
+    //the current number as JsonNumber for the reader, backed by a double if it can be converted exactly
+    JsonNumber getDecimalNumber() {
+        if (previousEvent != VALUE_NUMBER) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getDecimalNumber()");
+        }
+
+        final CharRange number = currentValueChars();
+        return decimalNumber(number.chars, number.offset, number.offset + number.length);
+    }
+
+    //a validated decimal number as JsonNumber, backed by a double if it can be converted exactly
+    static JsonNumber decimalNumber(final char[] chars, final int start, final int end) {
+        final long decimal = scanDecimal(chars, start, end);
+        if (decimal != INEXACT_DECIMAL) {
+            return new JsonDecimalImpl(decimalAsDouble(decimal), unscaledOf(decimal), scaleOf(decimal));
+        }
+        return new JsonNumberImpl(new BigDecimal(chars, start, end - start));
+    }
+
+    //the current string value, taken from the table if it is already there
+    JsonStringImpl getJsonString(final JsonStringTable table) {
+        if (previousEvent != VALUE_STRING) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getJsonString()");
+        }
+        final CharRange value = currentValueChars();
+        return table.get(value.chars, value.offset, value.offset + value.length);
+    }
+
+    //true if the current number is integral and fits into a long, so getLong() returns it exactly
+    boolean isLongNumber() {
+        if (!isIntegralNumber()) {
+            return false;
+        } else if (currentIntegralNumber != Integer.MIN_VALUE) {
+            return true;
+        }
+        final CharRange number = currentValueChars();
+        final int digits = number.chars[number.offset] == MINUS ? number.length - 1 : number.length;
+        return digits < 19 || (digits == 19 && parseLongFromChars(number.chars, number.offset, number.offset + number.length) != null);
+    }
+
+    //the current number packed as unscaled value and scale, see scanDecimal(), or INEXACT_DECIMAL
+    long getPackedDecimal() {
+        if (previousEvent != VALUE_NUMBER) {
+            throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support getPackedDecimal()");
+        }
+        final CharRange number = currentValueChars();
+        return scanDecimal(number.chars, number.offset, number.offset + number.length);
+    }
+
+    //split a number into unscaled value and scale like new BigDecimal(chars) would do
+    //both are returned packed into one long as unscaled * 64 + (scale + 32), so nothing is allocated
+    //returns INEXACT_DECIMAL if the number is not in the range where decimalAsDouble() is exact:
+    //at most 2^53 for the unscaled value and at most 22 for the absolute scale (the exact powers of ten of a double), see
+    //W. D. Clinger, How to read floating point numbers accurately, 1990
+    //the number is already validated by the tokenizer
+    static long scanDecimal(final char[] chars, final int start, final int end) {
+        int i = start;
+        final boolean negative = chars[i] == MINUS;
+        if (negative) {
+            i++;
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            final char c = chars[i];
+            if (c == DOT) {
+                fraction = true;
+            } else if (c == EXP_LOWERCASE || c == EXP_UPPERCASE) {
+                break;
+            } else {
+                if (unscaled != 0 || c != ZERO) {
+                    if (++digits > 16) { //more than 2^53 anyway
+                        return INEXACT_DECIMAL;
+                    }
+                }
+                unscaled = unscaled * 10 + (c - ZERO);
+                if (fraction) {
+                    scale++;
+                }
+            }
+        }
+
+        if (i < end) {
+            i++;
+            final boolean negativeExponent = chars[i] == MINUS;
+            if (negativeExponent || chars[i] == PLUS) {
+                i++;
+            }
+            int exponent = 0;
+            for (; i < end; i++) {
+                exponent = exponent * 10 + (chars[i] - ZERO);
+                if (exponent > MAX_EXACT_POWER_OF_TEN + scale) {
+                    return INEXACT_DECIMAL;
+                }
+            }
+            scale = negativeExponent ? scale + exponent : scale - exponent;
+        }
+
+        if (unscaled > (1L << 53) || scale > MAX_EXACT_POWER_OF_TEN || scale < -MAX_EXACT_POWER_OF_TEN || (negative && unscaled == 0)) {
+            return INEXACT_DECIMAL; //-0 is left to Double.parseDouble(), BigDecimal would lose the sign
+        }
+
+        return packDecimal(negative ? -unscaled : unscaled) + scale;
+    }
+
+    //both operands are exact doubles, so the single multiplication or division is correctly rounded
+    static double decimalAsDouble(final long decimal) {
+        final long unscaled = unscaledOf(decimal);
+        final int scale = scaleOf(decimal);
+        return scale >= 0 ? unscaled / EXACT_POWERS_OF_TEN[scale] : unscaled * EXACT_POWERS_OF_TEN[-scale];
+    }
+
+    static long unscaledOf(final long decimal) {
+        return decimal >> 6;
+    }
+
+    static int scaleOf(final long decimal) {
+        return (int) (decimal & 63) - 32;
+    }
+
+    //pack an integral value, it must be in [-2^53, 2^53]
+    static long packDecimal(final long unscaled) {
+        return (unscaled << 6) + 32;
+    }
+
+    @Override
+    public JsonLocation getLocation() {
+        return createLocation();
+    }
+
+    @Override
+    public void close() {
+        try {
+            closeInput();
+        } catch (final IOException e) {
+            throw new JsonException("Unexpected IO exception " + e.getMessage(), e);
+        } finally {
+            valueProvider.release(pooledValueBuffer);
+        }
+    }
+
+    //compare buffer[start, end) with chars
+    static boolean rangeEquals(final char[] buffer, final int start, final int end, final char[] chars) {
+        if (end - start != chars.length) {
+            return false;
+        }
+        for (int i = 0; i < chars.length; i++) {
+            if (buffer[start + i] != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //parse a char[] to long while checking overflow
+    //if overflowed return null
+    //no additional checks since we are sure here that there are no non digits in the array
+    static Long parseLongFromChars(final char[] chars, final int start, final int end) {
+
+        long retVal = 0;
+        final boolean negative = chars[start] == MINUS;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            final long tmp = retVal * 10 + (chars[i] - ZERO);
+            if (tmp < retVal) { //check overflow
+                return null;
+            } else {
+                retVal = tmp;
+            }
+        }
+
+        return negative ? -retVal : retVal;
+    }
+
+    //parse a char[] to int while checking overflow
+    //if overflowed return null
+    //no additional checks since we are sure here that there are no non digits in the array
+    static Integer parseIntegerFromChars(final char[] chars, final int start, final int end) {
+
+        int retVal = 0;
+        final boolean negative = chars[start] == MINUS;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            final int tmp = retVal * 10 + (chars[i] - ZERO);
+            if (tmp < retVal) { //check overflow
+                return null;
+            } else {
+                retVal = tmp;
+            }
+        }
+
+        return negative ? -retVal : retVal;
+    }
+
+    private JsonParsingException uexc(final char c, final String message) {
+        final JsonLocation location = createLocation();
+        return new JsonParsingException("Unexpected character '" + c + "' (Codepoint: " + String.valueOf(c).codePointAt(0) + ") on "
+                + location + ". Reason is [[" + message + "]]", location);
+    }
+
+    final JsonParsingException uexc(final String message) {
+        final char c = bufferPos < 0 ? 0 : currentChar();
+        return uexc(c, message);
+    }
+
+    final JsonParsingException tmc() {
+        final JsonLocation location = createLocation();
+        return new JsonParsingException("Too many characters. Maximum string/number length of " + maxValueLength + " exceeded on "
+                + location, location);
+    }
+
+    final JsonParsingException uexio(final IOException e) {
+        final JsonLocation location = createLocation();
+        return new JsonParsingException("Unexpected IO exception on " + location, e, location);
+    }
+
+    final JsonParsingException cust(final String message) {
+        final JsonLocation location = createLocation();
+        return new JsonParsingException("General exception on " + location + ". Reason is [[" + message + "]]", location);
+    }
+
+
+    //a CharSequence over a range of a char[], reset for each value instead of copying it into a String
+    static final class CharRange implements CharSequence {
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        void reset(final char[] chars, final int offset, final int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + " not in [0, " + length + ")");
+            }
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("range [" + start + ", " + end + ") not in [0, " + length + ")");
+            }
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
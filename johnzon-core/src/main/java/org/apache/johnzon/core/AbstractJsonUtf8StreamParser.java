@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.math.BigDecimal;
+
+import javax.json.stream.JsonParsingException;
+
+//Base for the parsers tokenizing UTF-8 encoded bytes.
+//All structural characters of Json are ASCII so we tokenize the raw bytes and skip the CharsetDecoder,
+//only string values are decoded and only when they are requested (or copied into the value buffer).
+//Location offsets and columns are counted in chars like for the other parsers, see position().
+//Subclasses own the byte storage and its refill, values are read through byteAt().
+abstract class AbstractJsonUtf8StreamParser extends AbstractJsonStreamParser {
+
+    //bytes which end the ordinary part of a string: quote, backslash and control chars
+    //all bytes of multi byte utf-8 sequences are >= 0x80 so they are ordinary
+    private static final boolean[] STRING_STOP = new boolean[256];
+
+    static {
+        for (int i = 0; i <= 0x1F; i++) {
+            STRING_STOP[i] = true;
+        }
+        STRING_STOP[QUOTE_CHAR] = true;
+        STRING_STOP[ESCAPE_CHAR] = true;
+    }
+
+    //the bytes of the input up to buffer[countedTo] which are not chars of their own: the continuation bytes
+    //minus one per 4 byte sequence which decodes to two chars (a surrogate pair)
+    //counted lazily when a position is needed or the buffer is dropped, so every byte is counted at most once
+    private long surplusBytes;
+    private int countedTo;
+
+    AbstractJsonUtf8StreamParser(final int maxStringLength, final SymbolTable symbolTable,
+            final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+        super(maxStringLength, symbolTable, valueBuffer);
+    }
+
+    //the byte at the given index of the main buffer
+    abstract byte byteAt(int index);
+
+    //the new position after the ordinary string bytes following pos in bytes[0, available)
+    static int skipStringBytes(final byte[] bytes, final int pos, final int available) {
+        final int last = available - 1;
+        int i = pos;
+
+        //4 bytes per step, the non short-circuit | avoids a branch per byte
+        while (i < last - 3) {
+            if (STRING_STOP[bytes[i + 1] & 0xFF] | STRING_STOP[bytes[i + 2] & 0xFF] | STRING_STOP[bytes[i + 3] & 0xFF]
+                    | STRING_STOP[bytes[i + 4] & 0xFF]) {
+                break;
+            }
+            i += 4;
+        }
+        while (i < last && !STRING_STOP[bytes[i + 1] & 0xFF]) {
+            i++;
+        }
+
+        return i;
+    }
+
+    static boolean isStringStop(final byte b) {
+        return STRING_STOP[b & 0xFF];
+    }
+
+    //decode content between "start" and "end" from buffer to value buffer
+    @Override
+    final void copyCurrentValue() {
+
+        if ((endOfValueInBuffer - startOfValueInBuffer) > 0) {
+
+            //the byte count is an upper bound for the count of decoded chars, only count them if it exceeds the limit
+            final int bytes = endOfValueInBuffer - startOfValueInBuffer;
+            ensureCopyBufferCapacity(fallBackCopyBufferLength + bytes > maxValueLength
+                    ? valueLength(startOfValueInBuffer, endOfValueInBuffer) : bytes);
+
+            fallBackCopyBufferLength = decode(startOfValueInBuffer, endOfValueInBuffer, fallBackCopyBuffer, fallBackCopyBufferLength);
+
+        }
+
+        startOfValueInBuffer = endOfValueInBuffer = -1;
+    }
+
+    //the count of chars decode() writes for buffer[start, end): one per sequence, two for the 4 byte ones (surrogate pair)
+    //continuation bytes don't count, malformed input is reported by decode()
+    @Override
+    final int valueLength(final int start, final int end) {
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            final int b = byteAt(i) & 0xFF;
+            if (b < 0x80 || b >= 0xC0) {
+                length += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    final long position(final int index) {
+        if (index >= countedTo) {
+            countSurplusBytes(index);
+            return pastBufferReadCount + index - surplusBytes;
+        }
+        //behind an unread char
+        return pastBufferReadCount + index - surplusBytes + surplusBytes(index, countedTo);
+    }
+
+    //the first "length" bytes of the buffer were dropped (or the buffer is replaced), has to be called before they are overwritten
+    final void consumed(final int length) {
+        if (countedTo < length) {
+            countSurplusBytes(length);
+        }
+        countedTo -= length;
+        pastBufferReadCount += length;
+    }
+
+    //buffer[0, index) is not part of the input (a BOM)
+    final void skipped(final int index) {
+        countedTo = index;
+    }
+
+    private void countSurplusBytes(final int end) {
+        surplusBytes += surplusBytes(countedTo, end);
+        countedTo = end;
+    }
+
+    private int surplusBytes(final int start, final int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            final int b = byteAt(i) & 0xFF;
+            if ((b & 0xC0) == 0x80) {
+                count++;
+            } else if (b >= 0xF0) {
+                count--;
+            }
+        }
+        return count;
+    }
+
+    //count of bytes at the end of [start, end) which belong to an utf-8 sequence which is not complete yet
+    //they have to be carried over to the next buffer when it is refilled
+    final int incompleteSequenceLength(final int start, final int end) {
+        for (int i = end - 1, count = 1; i >= start && count < 4; i--, count++) {
+            final int b = byteAt(i) & 0xFF;
+            if (b < 0x80) {
+                return 0;
+            }
+            if (b >= 0xC0) { // lead byte
+                final int length = b >= 0xF0 ? 4 : (b >= 0xE0 ? 3 : 2);
+                return length > count ? count : 0;
+            }
+            // continuation byte, look for the lead byte
+        }
+        return 0;
+    }
+
+    //decode buffer[start, end) into chars starting at offset and return the new length
+    private int decode(final int start, final int end, final char[] chars, final int offset) {
+        int pos = offset;
+        int i = start;
+
+        while (i < end) {
+            final int b = byteAt(i);
+
+            if (b >= 0) { // ascii
+                chars[pos++] = (char) b;
+                i++;
+                continue;
+            }
+
+            if ((b & 0xE0) == 0xC0) {
+                final int cp = ((b & 0x1F) << 6) | continuation(i + 1, end);
+                if (cp < 0x80) {
+                    throw malformed(i);
+                }
+                chars[pos++] = (char) cp;
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                final int cp = ((b & 0x0F) << 12) | (continuation(i + 1, end) << 6) | continuation(i + 2, end);
+                if (cp < 0x800 || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+                    throw malformed(i);
+                }
+                chars[pos++] = (char) cp;
+                i += 3;
+            } else if ((b & 0xF8) == 0xF0) {
+                final int cp = ((b & 0x07) << 18) | (continuation(i + 1, end) << 12) | (continuation(i + 2, end) << 6)
+                        | continuation(i + 3, end);
+                if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+                    throw malformed(i);
+                }
+                final int offsetCp = cp - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+                chars[pos++] = (char) ((offsetCp >>> 10) + Character.MIN_HIGH_SURROGATE);
+                chars[pos++] = (char) ((offsetCp & 0x3FF) + Character.MIN_LOW_SURROGATE);
+                i += 4;
+            } else {
+                throw malformed(i);
+            }
+        }
+
+        return pos;
+    }
+
+    //the 6 payload bits of the continuation byte at index i
+    private int continuation(final int i, final int end) {
+        if (i >= end) {
+            throw malformed(i);
+        }
+        final byte b = byteAt(i);
+        if ((b & 0xC0) != 0x80) {
+            throw malformed(i);
+        }
+        return b & 0x3F;
+    }
+
+    private JsonParsingException malformed(final int index) {
+        return cust("Invalid UTF-8 sequence at buffer index " + index);
+    }
+
+    @Override
+    final char currentChar() {
+        return (char) (byteAt(bufferPos) & 0xFF);
+    }
+
+    @Override
+    final String bufferValueAsString() {
+        copyCurrentValue();
+        return new String(fallBackCopyBuffer, 0, fallBackCopyBufferLength);
+    }
+
+    @Override
+    String bufferValueAsKey(final SymbolTable symbols) {
+        copyCurrentValue();
+        return symbols.get(fallBackCopyBuffer, 0, fallBackCopyBufferLength);
+    }
+
+    @Override
+    final Integer bufferValueAsInteger() {
+        return parseIntegerFromBytes(startOfValueInBuffer, endOfValueInBuffer);
+    }
+
+    @Override
+    final Long bufferValueAsLong() {
+        return parseLongFromBytes(startOfValueInBuffer, endOfValueInBuffer);
+    }
+
+    @Override
+    final BigDecimal bufferValueAsBigDecimal() {
+        copyCurrentValue();
+        return new BigDecimal(fallBackCopyBuffer, 0, fallBackCopyBufferLength);
+    }
+
+    @Override
+    final void bufferValueAsChars(final CharRange range) {
+        copyCurrentValue();
+        range.reset(fallBackCopyBuffer, 0, fallBackCopyBufferLength);
+    }
+
+    //ascii values are compared on the bytes, everything else is decoded first
+    @Override
+    final boolean bufferValueEquals(final char[] chars) {
+        final int length = endOfValueInBuffer - startOfValueInBuffer;
+        if (length < chars.length) { //an utf-8 encoded value has at least as many bytes as chars
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final byte b = byteAt(startOfValueInBuffer + i);
+            if (b < 0) {
+                copyCurrentValue();
+                return rangeEquals(fallBackCopyBuffer, 0, fallBackCopyBufferLength, chars);
+            }
+            if (i >= chars.length || b != chars[i]) {
+                return false;
+            }
+        }
+        return length == chars.length;
+    }
+
+    //parse the bytes to long while checking overflow
+    //if overflowed return null
+    //no additional checks since we are sure here that there are no non digits in the range
+    private Long parseLongFromBytes(final int start, final int end) {
+
+        long retVal = 0;
+        final boolean negative = byteAt(start) == MINUS;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            final long tmp = retVal * 10 + (byteAt(i) - ZERO);
+            if (tmp < retVal) { //check overflow
+                return null;
+            } else {
+                retVal = tmp;
+            }
+        }
+
+        return negative ? -retVal : retVal;
+    }
+
+    //parse the bytes to int while checking overflow
+    //if overflowed return null
+    //no additional checks since we are sure here that there are no non digits in the range
+    private Integer parseIntegerFromBytes(final int start, final int end) {
+
+        int retVal = 0;
+        final boolean negative = byteAt(start) == MINUS;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            final int tmp = retVal * 10 + (byteAt(i) - ZERO);
+            if (tmp < retVal) { //check overflow
+                return null;
+            } else {
+                retVal = tmp;
+            }
+        }
+
+        return negative ? -retVal : retVal;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//The pools of BufferStrategy.BOUNDED, shared by all factories using it.
+//There is one SizeClass per buffer type and size, so e.g. all 64k char buffers of parsers and generators share one pool.
+//A SizeClass has a fixed number of slots split into stripes, a thread starts looking for a buffer in its own stripe
+//so concurrent threads mostly work on different slots instead of all of them competing for the head of one queue.
+//The pools are bounded three times:
+// - by the number of slots per SizeClass
+// - by the bytes retained by all pools together, a released buffer is dropped if it would exceed them
+// - by time, a SizeClass which was not used for the idle timeout is emptied on a later release or allocation
+//There is no background thread, the trimming is done by the callers.
+//Nothing shared is written on the hot path either: the retained bytes are counted per stripe (a thread adds to and
+//subtracts from its own one, only the sum is meaningful) and a SizeClass only records its last use when it changed
+//by more than a fraction of the idle timeout. A pooled buffer is taken without reading the clock.
+final class BoundedBufferPool {
+    public static final String MAX_RETAINED_BYTES = "org.apache.johnzon.bounded-buffer-pool.max-retained-bytes";
+    public static final long DEFAULT_MAX_RETAINED_BYTES = Long.getLong(MAX_RETAINED_BYTES, 16 * 1024 * 1024); //16m
+
+    public static final String SLOTS_PER_SIZE = "org.apache.johnzon.bounded-buffer-pool.slots-per-size";
+    public static final int DEFAULT_SLOTS_PER_SIZE = Integer.getInteger(SLOTS_PER_SIZE, 4 * Runtime.getRuntime().availableProcessors());
+
+    public static final String IDLE_TIMEOUT = "org.apache.johnzon.bounded-buffer-pool.idle-timeout-ms";
+    public static final long DEFAULT_IDLE_TIMEOUT = Long.getLong(IDLE_TIMEOUT, 60 * 1000); //1 minute
+
+    static final BoundedBufferPool INSTANCE = new BoundedBufferPool(DEFAULT_MAX_RETAINED_BYTES, DEFAULT_SLOTS_PER_SIZE,
+            DEFAULT_IDLE_TIMEOUT, Runtime.getRuntime().availableProcessors());
+
+    private final long maxRetainedBytes;
+    private final int slotsPerSize;
+    private final long idleTimeoutNanos;
+    private final int stripeMask;
+    private final int stripeLength;
+    private final long touchIntervalNanos;
+
+    //longs per stripe of retainedBytes, 128 bytes so two stripes never share a cache line
+    private static final int RETAINED_STRIPE_LENGTH = 16;
+    private final AtomicLongArray retainedBytes;
+    private final ConcurrentMap<String, SizeClass<?>> sizeClasses = new ConcurrentHashMap<String, SizeClass<?>>();
+    private final AtomicLong nextTrim;
+
+    BoundedBufferPool(final long maxRetainedBytes, final int slotsPerSize, final long idleTimeoutMillis, final int stripes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.idleTimeoutNanos = idleTimeoutMillis * 1000000L;
+
+        int stripeCount = 1;
+        while (stripeCount < stripes && stripeCount < slotsPerSize) {
+            stripeCount <<= 1;
+        }
+        this.stripeMask = stripeCount - 1;
+        this.stripeLength = Math.max(1, slotsPerSize / stripeCount);
+        this.slotsPerSize = stripeCount * stripeLength;
+        this.retainedBytes = new AtomicLongArray(stripeCount * RETAINED_STRIPE_LENGTH);
+        this.touchIntervalNanos = idleTimeoutNanos / 8;
+        this.nextTrim = new AtomicLong(System.nanoTime() + idleTimeoutNanos);
+    }
+
+    //the pool for buffers of the given type and size, bytesPerUnit is the size of one element (2 for char)
+    @SuppressWarnings("unchecked")
+    <T> SizeClass<T> sizeClass(final String type, final int size, final int bytesPerUnit) {
+        final String key = type + ':' + size;
+        SizeClass<T> sizeClass = (SizeClass<T>) sizeClasses.get(key);
+        if (sizeClass == null) {
+            sizeClass = new SizeClass<T>(this, (long) size * bytesPerUnit);
+            final SizeClass<T> existing = (SizeClass<T>) sizeClasses.putIfAbsent(key, sizeClass);
+            if (existing != null) {
+                sizeClass = existing;
+            }
+        }
+        return sizeClass;
+    }
+
+    long getRetainedBytes() {
+        long retained = 0;
+        for (int i = 0; i < retainedBytes.length(); i += RETAINED_STRIPE_LENGTH) {
+            retained += retainedBytes.get(i);
+        }
+        return retained;
+    }
+
+    private void addRetainedBytes(final long delta) {
+        retainedBytes.addAndGet(stripe() * RETAINED_STRIPE_LENGTH, delta);
+    }
+
+    //the stripe of the current thread
+    private int stripe() {
+        return DirectMappedCache.spread((int) Thread.currentThread().getId()) & stripeMask;
+    }
+
+    //empty the size classes which were idle for the timeout, at most once per timeout
+    private void trimIfDue(final long now) {
+        final long due = nextTrim.get();
+        if (now - due < 0 || !nextTrim.compareAndSet(due, now + idleTimeoutNanos)) {
+            return;
+        }
+        for (final SizeClass<?> sizeClass : sizeClasses.values()) {
+            if (now - sizeClass.lastUsed >= idleTimeoutNanos) {
+                sizeClass.clear();
+            }
+        }
+    }
+
+    static final class SizeClass<T> {
+        private final BoundedBufferPool pool;
+        private final long bytes;
+        private final AtomicReferenceArray<T> slots;
+        //only incremented when a race for a slot was lost, so the fast path stays untouched
+        private final AtomicLong contention = new AtomicLong();
+        private volatile long lastUsed = System.nanoTime();
+
+        private SizeClass(final BoundedBufferPool pool, final long bytes) {
+            this.pool = pool;
+            this.bytes = bytes;
+            this.slots = new AtomicReferenceArray<T>(pool.slotsPerSize);
+        }
+
+        //a pooled buffer or null
+        T poll() {
+            final int start = stripeStart();
+            final int length = slots.length();
+            for (int i = 0; i < length; i++) {
+                final int index = start + i < length ? start + i : start + i - length;
+                if (slots.get(index) != null) {
+                    final T buffer = slots.getAndSet(index, null);
+                    if (buffer != null) {
+                        pool.addRetainedBytes(-bytes);
+                        return buffer;
+                    }
+                    contention.incrementAndGet();
+                }
+            }
+            //the caller allocates now, which costs more than reading the clock
+            touch();
+            return null;
+        }
+
+        //false if the buffer is dropped because the pool is full
+        //the limit is checked against the sum of the stripes before the buffer is added, so concurrent offers
+        //can exceed it by one buffer each
+        boolean offer(final T buffer) {
+            touch();
+            if (pool.getRetainedBytes() + bytes > pool.maxRetainedBytes) {
+                return false;
+            }
+
+            final int start = stripeStart();
+            final int length = slots.length();
+            for (int i = 0; i < length; i++) {
+                final int index = start + i < length ? start + i : start + i - length;
+                if (slots.get(index) == null) {
+                    if (slots.compareAndSet(index, null, buffer)) {
+                        pool.addRetainedBytes(bytes);
+                        return true;
+                    }
+                    contention.incrementAndGet();
+                }
+            }
+            return false;
+        }
+
+        //record the use coarsely so the shared field is rarely written, and trim the idle size classes if due
+        private void touch() {
+            final long now = System.nanoTime();
+            if (now - lastUsed > pool.touchIntervalNanos) {
+                lastUsed = now;
+            }
+            pool.trimIfDue(now);
+        }
+
+        //the bytes of the buffers in the slots, counted when asked for
+        long getRetainedBytes() {
+            long retained = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.get(i) != null) {
+                    retained += bytes;
+                }
+            }
+            return retained;
+        }
+
+        long getContention() {
+            return contention.get();
+        }
+
+        private void clear() {
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.getAndSet(i, null) != null) {
+                    pool.addRetainedBytes(-bytes);
+                }
+            }
+        }
+
+        //the first slot of the stripe of the current thread
+        private int stripeStart() {
+            return pool.stripe() * pool.stripeLength;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Counters of a BufferProvider, always recorded.
+//A provider is used by all threads of a factory, so the counters are striped by thread: each stripe has its own
+//cache line and the threads mostly increment different ones. The stripes are only summed up when a counter is read.
+//The increments are atomic so no count is lost, they are uncontended as long as the threads use different stripes.
+//Reuses are not counted, they are requests - allocations.
+public final class BufferStats implements BufferStatsMBean, Serializable {
+    private static final int REQUESTS = 0;
+    private static final int ALLOCATIONS = 1;
+    private static final int RELEASES = 2;
+    private static final int DROPPED = 3;
+
+    //longs per stripe, 128 bytes so two stripes never share a cache line
+    private static final int STRIPE_LENGTH = 16;
+    private static final int STRIPE_MASK;
+
+    static {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 64) {
+            stripes <<= 1;
+        }
+        STRIPE_MASK = stripes - 1;
+    }
+
+    //what the provider knows about its pool, read only with the counters
+    interface Gauges extends Serializable {
+        long retainedBytes();
+
+        long contention();
+    }
+
+    private final String strategy;
+    private final String bufferType;
+    private final int bufferSize;
+    private final Gauges gauges;
+    private final AtomicLongArray counters = new AtomicLongArray((STRIPE_MASK + 1) * STRIPE_LENGTH);
+
+    BufferStats(final String strategy, final String bufferType, final int bufferSize, final Gauges gauges) {
+        this.strategy = strategy;
+        this.bufferType = bufferType;
+        this.bufferSize = bufferSize;
+        this.gauges = gauges;
+    }
+
+    void request() {
+        increment(REQUESTS);
+    }
+
+    void allocation() {
+        increment(ALLOCATIONS);
+    }
+
+    void release() {
+        increment(RELEASES);
+    }
+
+    void drop() {
+        increment(DROPPED);
+    }
+
+    private void increment(final int counter) {
+        final int stripe = DirectMappedCache.spread((int) Thread.currentThread().getId()) & STRIPE_MASK;
+        counters.incrementAndGet(stripe * STRIPE_LENGTH + counter);
+    }
+
+    private long sum(final int counter) {
+        long sum = 0;
+        for (int i = counter; i < counters.length(); i += STRIPE_LENGTH) {
+            sum += counters.get(i);
+        }
+        return sum;
+    }
+
+    @Override
+    public String getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public String getBufferType() {
+        return bufferType;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    public long getRequests() {
+        return sum(REQUESTS);
+    }
+
+    @Override
+    public long getAllocations() {
+        return sum(ALLOCATIONS);
+    }
+
+    @Override
+    public long getReuses() {
+        //read in this order so a concurrent request doesn't make it negative
+        final long allocations = getAllocations();
+        return Math.max(0, getRequests() - allocations);
+    }
+
+    @Override
+    public double getHitRate() {
+        final long allocations = getAllocations();
+        final long requests = getRequests();
+        return requests == 0 ? 0 : Math.max(0, requests - allocations) / (double) requests;
+    }
+
+    @Override
+    public long getReleases() {
+        return sum(RELEASES);
+    }
+
+    @Override
+    public long getDropped() {
+        return sum(DROPPED);
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return gauges.retainedBytes();
+    }
+
+    @Override
+    public long getContention() {
+        return gauges.contention();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferStats{strategy=" + strategy + ", type=" + bufferType + ", size=" + bufferSize
+                + ", requests=" + getRequests() + ", allocations=" + getAllocations() + ", releases=" + getReleases()
+                + ", dropped=" + getDropped() + ", retainedBytes=" + getRetainedBytes() + ", contention=" + getContention() + '}';
+    }
+}
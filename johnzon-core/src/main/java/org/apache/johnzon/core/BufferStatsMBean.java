@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+//The counters of one BufferProvider, see BufferStats.
+//Registered as org.apache.johnzon:type=BufferStats,factory=...,buffer=... if AbstractJsonFactory.BUFFER_STATS_JMX is set,
+//until AbstractJsonFactory.unregisterBufferStats() is called or the factory is garbage collected.
+//A factory which is never released (e.g. held by a static field) keeps its MBeans, so call unregisterBufferStats()
+//when it is dropped at shutdown or undeployment.
+public interface BufferStatsMBean {
+    //the name of the BufferStrategy, e.g. QUEUE
+    String getStrategy();
+
+    //char, StringBuilder, byte or direct
+    String getBufferType();
+
+    //the size of new buffers in chars or bytes
+    int getBufferSize();
+
+    //calls of newBuffer()
+    long getRequests();
+
+    //buffers created because none could be reused
+    long getAllocations();
+
+    //requests served with a reused buffer
+    long getReuses();
+
+    //reuses / requests, 0 without requests
+    double getHitRate();
+
+    //calls of release()
+    long getReleases();
+
+    //released buffers which were not kept for reuse, e.g. because a bounded pool was full
+    long getDropped();
+
+    //the bytes of the buffers currently kept for reuse, approximated and -1 if not known (THREAD_LOCAL)
+    //for BOUNDED and DIRECT it is the size class shared with the other providers of the same type and size
+    long getRetainedBytes();
+
+    //lost races for a pool slot, only counted by BOUNDED and DIRECT which share their size class with other providers
+    long getContention();
+}
@@ -32,6 +32,11 @@ public enum BufferStrategy {
         public BufferProvider<StringBuilder> newStringBuilderProvider(final int size) {
             return new StringBuilderByInstanceProvider(size);
         }
+
+        @Override
+        public BufferProvider<byte[]> newByteProvider(final int size) {
+            return new ByteBufferByInstanceProvider(size);
+        }
     },
     THREAD_LOCAL {
         @Override
@@ -43,6 +48,11 @@ public enum BufferStrategy {
         public BufferProvider<StringBuilder> newStringBuilderProvider(final int size) {
             return new StringBuilderThreadLocalProvider(size);
         }
+
+        @Override
+        public BufferProvider<byte[]> newByteProvider(final int size) {
+            return new ByteBufferThreadLocalProvider(size);
+        }
     },
     QUEUE {
         @Override
@@ -54,6 +64,11 @@ public enum BufferStrategy {
         public BufferProvider<StringBuilder> newStringBuilderProvider(final int size) {
             return new StringBuilderQueueProvider(size);
         }
+
+        @Override
+        public BufferProvider<byte[]> newByteProvider(final int size) {
+            return new ByteBufferQueueProvider(size);
+        }
     },
     SINGLETON {
         @Override
@@ -65,10 +80,51 @@ public enum BufferStrategy {
         public BufferProvider<StringBuilder> newStringBuilderProvider(final int size) {
             return new StringBuilderSingletonProvider(size);
         }
+
+        @Override
+        public BufferProvider<byte[]> newByteProvider(final int size) {
+            return new ByteBufferSingletonProvider(size);
+        }
+    },
+    //bounded pools shared by all providers of the same buffer type and size, see BoundedBufferPool
+    BOUNDED {
+        @Override
+        public BufferProvider<char[]> newCharProvider(final int size) {
+            return new CharBufferBoundedProvider(this, size);
+        }
+
+        @Override
+        public BufferProvider<StringBuilder> newStringBuilderProvider(final int size) {
+            return new StringBuilderBoundedProvider(this, size);
+        }
+
+        @Override
+        public BufferProvider<byte[]> newByteProvider(final int size) {
+            return new ByteBufferBoundedProvider(this, size);
+        }
+    },
+    //like BOUNDED, in addition parsers of channels and async generators use pooled direct buffers, see DirectByteBufferProvider
+    //the char and StringBuilder buffers of the other paths stay on the heap
+    DIRECT {
+        @Override
+        public BufferProvider<char[]> newCharProvider(final int size) {
+            return new CharBufferBoundedProvider(this, size);
+        }
+
+        @Override
+        public BufferProvider<StringBuilder> newStringBuilderProvider(final int size) {
+            return new StringBuilderBoundedProvider(this, size);
+        }
+
+        @Override
+        public BufferProvider<byte[]> newByteProvider(final int size) {
+            return new ByteBufferBoundedProvider(this, size);
+        }
     };
 
     public abstract BufferProvider<char[]> newCharProvider(int size);
     public abstract BufferProvider<StringBuilder> newStringBuilderProvider(int size);
+    public abstract BufferProvider<byte[]> newByteProvider(int size);
 
     public static interface BufferProvider<T> extends Serializable {
         T newBuffer();
@@ -76,25 +132,59 @@ public enum BufferStrategy {
         void release(T value);
     }
 
+    //the providers of the strategies count what they do, see BufferStats
+    public static interface InstrumentedBufferProvider<T> extends BufferProvider<T> {
+        BufferStats getStats();
+    }
+
+    private static abstract class AbstractProvider<T> implements InstrumentedBufferProvider<T>, BufferStats.Gauges {
+        protected final int size;
+        protected final int bytesPerUnit;
+        protected final BufferStats stats;
+
+        protected AbstractProvider(final BufferStrategy strategy, final String type, final int size, final int bytesPerUnit) {
+            this.size = size;
+            this.bytesPerUnit = bytesPerUnit;
+            this.stats = new BufferStats(strategy.name(), type, size, this);
+        }
+
+        //for providers counting into the stats of another one
+        protected AbstractProvider(final BufferStats stats, final int size, final int bytesPerUnit) {
+            this.size = size;
+            this.bytesPerUnit = bytesPerUnit;
+            this.stats = stats;
+        }
+
+        @Override
+        public BufferStats getStats() {
+            return stats;
+        }
+
+        @Override
+        public long retainedBytes() {
+            return -1;
+        }
+
+        @Override
+        public long contention() {
+            return 0;
+        }
+    }
+
     private static class CharBufferSingletonProvider extends SingletonProvider<char[]> {
         public CharBufferSingletonProvider(final int size) {
-            super(size);
+            super("char", size, 2);
         }
 
         @Override
         protected char[] newInstance(int size) {
             return new char[size];
         }
-
-        @Override
-        public void release(final char[] value) {
-            // no-op
-        }
     }
 
     private static class StringBuilderSingletonProvider extends SingletonProvider<StringBuilder> {
         public StringBuilderSingletonProvider(final int size) {
-            super(size);
+            super("StringBuilder", size, 2);
         }
 
         @Override
@@ -105,68 +195,116 @@ public enum BufferStrategy {
         @Override
         public void release(final StringBuilder value) {
             value.setLength(0);
+            super.release(value);
+        }
+    }
+
+    private static class ByteBufferSingletonProvider extends SingletonProvider<byte[]> {
+        public ByteBufferSingletonProvider(final int size) {
+            super("byte", size, 1);
+        }
+
+        @Override
+        protected byte[] newInstance(final int size) {
+            return new byte[size];
         }
     }
 
-    private static abstract class SingletonProvider<T> implements BufferProvider<T> {
+    private static abstract class SingletonProvider<T> extends AbstractProvider<T> {
         protected final T buffer;
 
-        public SingletonProvider(final int size) {
+        public SingletonProvider(final String type, final int size, final int bytesPerUnit) {
+            super(SINGLETON, type, size, bytesPerUnit);
             buffer = newInstance(size);
+            stats.allocation();
         }
 
         protected abstract T newInstance(int size);
 
         @Override
         public T newBuffer() {
+            stats.request();
             return buffer;
         }
 
         @Override
         public void release(final T value) {
-            // no-op
+            stats.release();
+        }
+
+        @Override
+        public long retainedBytes() {
+            return (long) size * bytesPerUnit;
         }
     }
 
-    private static abstract class ThreadLocalProvider<T> implements BufferProvider<T> {
+    //virtual threads live for one task only, a buffer kept in their ThreadLocal is never reused
+    //so for them the buffers come from the BOUNDED pools, which are not bound to a thread or carrier
+    //both count into the stats of this provider, the retained bytes of the ThreadLocals are not known
+    private static abstract class ThreadLocalProvider<T> extends AbstractProvider<T> {
         private final ThreadLocalBufferCache<T> cache;
+        private final BoundedProvider<T> virtualThreadProvider;
 
-        public ThreadLocalProvider(final int size) {
+        public ThreadLocalProvider(final String type, final int size, final int bytesPerUnit) {
+            super(THREAD_LOCAL, type, size, bytesPerUnit);
             cache = new ThreadLocalBufferCache<T>(size) {
                 @Override
                 protected T newValue(int defaultSize) {
+                    stats.allocation();
                     return newInstance(size);
                 }
             };
+            this.virtualThreadProvider = newVirtualThreadProvider(stats);
         }
 
         protected abstract T newInstance(int size);
 
+        protected abstract BoundedProvider<T> newVirtualThreadProvider(BufferStats stats);
+
         @Override
         public T newBuffer() {
+            if (VirtualThreads.isCurrentThreadVirtual()) {
+                return virtualThreadProvider.newBuffer();
+            }
+            stats.request();
             return cache.getCache();
         }
 
         @Override
         public void release(final T value) {
+            if (VirtualThreads.isCurrentThreadVirtual()) {
+                virtualThreadProvider.release(value);
+                return;
+            }
+            stats.release();
             cache.release(value);
         }
+
+        @Override
+        public long contention() {
+            return virtualThreadProvider.contention();
+        }
     }
 
     private static class CharBufferThreadLocalProvider extends ThreadLocalProvider<char[]> {
         public CharBufferThreadLocalProvider(int size) {
-            super(size);
+            super("char", size, 2);
         }
 
         @Override
         protected char[] newInstance(final int size) {
             return new char[size];
         }
+
+        @Override
+        protected BoundedProvider<char[]> newVirtualThreadProvider(final BufferStats stats) {
+            return new CharBufferBoundedProvider(stats, size);
+        }
     }
 
     private static class StringBuilderThreadLocalProvider extends ThreadLocalProvider<StringBuilder> {
         public StringBuilderThreadLocalProvider(int size) {
-            super(size);
+            super("StringBuilder", size, 2);
         }
 
         @Override
@@ -174,6 +312,11 @@ public enum BufferStrategy {
             return new StringBuilder(size);
         }
 
+        @Override
+        protected BoundedProvider<StringBuilder> newVirtualThreadProvider(final BufferStats stats) {
+            return new StringBuilderBoundedProvider(stats, size);
+        }
+
         @Override
         public void release(final StringBuilder value) {
             value.setLength(0);
@@ -181,56 +324,96 @@ public enum BufferStrategy {
         }
     }
 
-    private static class CharBufferByInstanceProvider implements BufferProvider<char[]> {
-        private final int size;
+    private static class ByteBufferThreadLocalProvider extends ThreadLocalProvider<byte[]> {
+        public ByteBufferThreadLocalProvider(final int size) {
+            super("byte", size, 1);
+        }
 
-        public CharBufferByInstanceProvider(final int size) {
-            this.size = size;
+        @Override
+        protected byte[] newInstance(final int size) {
+            return new byte[size];
         }
 
         @Override
-        public char[] newBuffer() {
-            return new char[size];
+        protected BoundedProvider<byte[]> newVirtualThreadProvider(final BufferStats stats) {
+            return new ByteBufferBoundedProvider(stats, size);
+        }
+    }
+
+    private static abstract class ByInstanceProvider<T> extends AbstractProvider<T> {
+        public ByInstanceProvider(final String type, final int size, final int bytesPerUnit) {
+            super(BY_INSTANCE, type, size, bytesPerUnit);
+        }
+
+        protected abstract T newInstance(int size);
+
+        @Override
+        public T newBuffer() {
+            stats.request();
+            stats.allocation();
+            return newInstance(size);
+        }
+
+        @Override
+        public void release(final T value) {
+            stats.release();
+            stats.drop();
         }
 
         @Override
-        public void release(final char[] value) {
-            // no-op
+        public long retainedBytes() {
+            return 0;
         }
     }
 
-    private static class StringBuilderByInstanceProvider implements BufferProvider<StringBuilder> {
-        private final int size;
+    private static class CharBufferByInstanceProvider extends ByInstanceProvider<char[]> {
+        public CharBufferByInstanceProvider(final int size) {
+            super("char", size, 2);
+        }
+
+        @Override
+        protected char[] newInstance(final int size) {
+            return new char[size];
+        }
+    }
 
+    private static class StringBuilderByInstanceProvider extends ByInstanceProvider<StringBuilder> {
         public StringBuilderByInstanceProvider(final int size) {
-            this.size = size;
+            super("StringBuilder", size, 2);
         }
 
         @Override
-        public StringBuilder newBuffer() {
+        protected StringBuilder newInstance(final int size) {
             return new StringBuilder(size);
         }
+    }
+
+    private static class ByteBufferByInstanceProvider extends ByInstanceProvider<byte[]> {
+        public ByteBufferByInstanceProvider(final int size) {
+            super("byte", size, 1);
+        }
 
         @Override
-        public void release(final StringBuilder value) {
-            // no-op
+        protected byte[] newInstance(final int size) {
+            return new byte[size];
         }
     }
 
-    private static abstract class QueueProvider<T> implements BufferProvider<T> {
-        private final int size;
+    private static abstract class QueueProvider<T> extends AbstractProvider<T> {
         private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
 
-        public QueueProvider(final int size) {
-            this.size = size;
+        public QueueProvider(final String type, final int size, final int bytesPerUnit) {
+            super(QUEUE, type, size, bytesPerUnit);
         }
 
         protected abstract T newInstance(int size);
 
         @Override
         public T newBuffer() {
+            stats.request();
             final T buffer = queue.poll();
             if (buffer == null) {
+                stats.allocation();
                 return newInstance(size);
             }
             return buffer;
@@ -238,13 +421,20 @@ public enum BufferStrategy {
 
         @Override
         public void release(final T value) {
+            stats.release();
             queue.offer(value);
         }
+
+        //size() walks the queue, fine as it is only called when the stats are read
+        @Override
+        public long retainedBytes() {
+            return (long) queue.size() * size * bytesPerUnit;
+        }
     }
 
     private static class CharBufferQueueProvider extends QueueProvider<char[]> {
         public CharBufferQueueProvider(final int size) {
-            super(size);
+            super("char", size, 2);
         }
 
         @Override
@@ -255,7 +445,7 @@ public enum BufferStrategy {
 
     private static class StringBuilderQueueProvider extends QueueProvider<StringBuilder> {
         public StringBuilderQueueProvider(final int size) {
-            super(size);
+            super("StringBuilder", size, 2);
         }
 
         @Override
@@ -269,4 +459,139 @@ public enum BufferStrategy {
             super.release(value);
         }
     }
+
+    private static class ByteBufferQueueProvider extends QueueProvider<byte[]> {
+        public ByteBufferQueueProvider(final int size) {
+            super("byte", size, 1);
+        }
+
+        @Override
+        protected byte[] newInstance(final int size) {
+            return new byte[size];
+        }
+    }
+
+    //the retained bytes and the contention are the ones of the size class, which is shared with all providers of the same type and size
+    private static abstract class BoundedProvider<T> extends AbstractProvider<T> {
+        private final String type;
+        private transient volatile BoundedBufferPool.SizeClass<T> sizeClass;
+
+        public BoundedProvider(final BufferStrategy strategy, final String type, final int size, final int bytesPerUnit) {
+            super(strategy, type, size, bytesPerUnit);
+            this.type = type;
+        }
+
+        public BoundedProvider(final BufferStats stats, final String type, final int size, final int bytesPerUnit) {
+            super(stats, size, bytesPerUnit);
+            this.type = type;
+        }
+
+        protected abstract T newInstance(int size);
+
+        //only buffers of the size of this provider are pooled, others (e.g. grown ones) are left to the gc
+        protected abstract boolean isPoolable(T value, int size);
+
+        @Override
+        public T newBuffer() {
+            stats.request();
+            final T buffer = sizeClass().poll();
+            if (buffer == null) {
+                stats.allocation();
+                return newInstance(size);
+            }
+            return buffer;
+        }
+
+        @Override
+        public void release(final T value) {
+            stats.release();
+            if (value == null || !isPoolable(value, size) || !sizeClass().offer(value)) {
+                stats.drop();
+            }
+        }
+
+        @Override
+        public long retainedBytes() {
+            return sizeClass().getRetainedBytes();
+        }
+
+        @Override
+        public long contention() {
+            return sizeClass().getContention();
+        }
+
+        private BoundedBufferPool.SizeClass<T> sizeClass() {
+            BoundedBufferPool.SizeClass<T> current = sizeClass;
+            if (current == null) {
+                current = BoundedBufferPool.INSTANCE.sizeClass(type, size, bytesPerUnit);
+                sizeClass = current;
+            }
+            return current;
+        }
+    }
+
+    private static class CharBufferBoundedProvider extends BoundedProvider<char[]> {
+        public CharBufferBoundedProvider(final BufferStrategy strategy, final int size) {
+            super(strategy, "char", size, 2);
+        }
+
+        public CharBufferBoundedProvider(final BufferStats stats, final int size) {
+            super(stats, "char", size, 2);
+        }
+
+        @Override
+        protected char[] newInstance(final int size) {
+            return new char[size];
+        }
+
+        @Override
+        protected boolean isPoolable(final char[] value, final int size) {
+            return value.length == size;
+        }
+    }
+
+    private static class StringBuilderBoundedProvider extends BoundedProvider<StringBuilder> {
+        public StringBuilderBoundedProvider(final BufferStrategy strategy, final int size) {
+            super(strategy, "StringBuilder", size, 2);
+        }
+
+        public StringBuilderBoundedProvider(final BufferStats stats, final int size) {
+            super(stats, "StringBuilder", size, 2);
+        }
+
+        @Override
+        protected StringBuilder newInstance(final int size) {
+            return new StringBuilder(size);
+        }
+
+        //a builder which grew would retain more than the size class accounts for, it is left to the gc like grown char[]
+        @Override
+        protected boolean isPoolable(final StringBuilder value, final int size) {
+            if (value.capacity() != size) {
+                return false;
+            }
+            value.setLength(0);
+            return true;
+        }
+    }
+
+    private static class ByteBufferBoundedProvider extends BoundedProvider<byte[]> {
+        public ByteBufferBoundedProvider(final BufferStrategy strategy, final int size) {
+            super(strategy, "byte", size, 1);
+        }
+
+        public ByteBufferBoundedProvider(final BufferStats stats, final int size) {
+            super(stats, "byte", size, 1);
+        }
+
+        @Override
+        protected byte[] newInstance(final int size) {
+            return new byte[size];
+        }
+
+        @Override
+        protected boolean isPoolable(final byte[] value, final int size) {
+            return value.length == size;
+        }
+    }
 }
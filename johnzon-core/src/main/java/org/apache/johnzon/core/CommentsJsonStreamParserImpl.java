@@ -45,6 +45,21 @@ public class CommentsJsonStreamParserImpl extends JsonStreamParserImpl {
         super(reader, maxStringLength, bufferProvider, valueBuffer);
     }
 
+    CommentsJsonStreamParserImpl(final InputStream inputStream,
+                                 final Reader reader,
+                                 final Charset encoding,
+                                 final int maxStringLength,
+                                 final SymbolTable symbolTable,
+                                 final BufferStrategy.BufferProvider<char[]> bufferProvider,
+                                 final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+        super(inputStream, reader, encoding, maxStringLength, symbolTable, bufferProvider, valueBuffer);
+    }
+
+    CommentsJsonStreamParserImpl(final char[] chars, final int length, final int maxStringLength, final SymbolTable symbolTable,
+                                 final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+        super(chars, length, maxStringLength, symbolTable, valueBuffer);
+    }
+
     @Override
     protected Event defaultHandling(final char c) {
         if (c == '/') {
@@ -67,4 +82,18 @@ public class CommentsJsonStreamParserImpl extends JsonStreamParserImpl {
         }
         return super.defaultHandling(c);
     }
+
+    //a comment may contain brackets and quotes, so we can't just scan the chars but have to read the events
+    @Override
+    void skipStructure() {
+        int depth = 1;
+        do {
+            final Event event = next();
+            if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+                depth++;
+            } else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+                depth--;
+            }
+        } while (depth > 0);
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javax.json.JsonValue;
+
+//Unmodifiable map for the members of small objects, keys and values are kept in two arrays in insertion order.
+//A lookup is a linear scan which for a few keys is as fast as hashing (the hash of a String is cached)
+//but there is no table and no entry object per member.
+final class CompactObjectMap extends AbstractMap<String, JsonValue> implements Serializable {
+    private final String[] keys;
+    private final JsonValue[] values;
+    private transient Set<Entry<String, JsonValue>> entries;
+
+    //the arrays are used as they are, the keys must be distinct
+    CompactObjectMap(final String[] keys, final JsonValue[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    private int indexOf(final Object key) {
+        if (key != null) {
+            final int hash = key.hashCode();
+            for (int i = 0; i < keys.length; i++) {
+                final String k = keys[i];
+                if (k.hashCode() == hash && k.equals(key)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public JsonValue get(final Object key) {
+        final int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public Set<Entry<String, JsonValue>> entrySet() {
+        Set<Entry<String, JsonValue>> e = entries;
+        if (e == null) {
+            e = new AbstractSet<Entry<String, JsonValue>>() {
+                @Override
+                public Iterator<Entry<String, JsonValue>> iterator() {
+                    return new Iterator<Entry<String, JsonValue>>() {
+                        private int i = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < keys.length;
+                        }
+
+                        @Override
+                        public Entry<String, JsonValue> next() {
+                            if (i >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            final Entry<String, JsonValue> entry = new SimpleImmutableEntry<String, JsonValue>(keys[i], values[i]);
+                            i++;
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+            entries = e;
+        }
+        return e;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//Pooled direct ByteBuffers of BufferStrategy.DIRECT, used where the input or output is bytes anyway
+//(channel parsers and async generators). They are kept in the BOUNDED pools so the retained memory is limited as well.
+//A buffer has to be released explicitly (parsers and generators do it on close()), otherwise it is left to the gc
+//which frees the off-heap memory late. With org.apache.johnzon.direct-buffer.leak-detection=true each buffer remembers
+//where it was taken and a buffer collected without being released is logged with that stack trace.
+final class DirectByteBufferProvider implements BufferStrategy.InstrumentedBufferProvider<ByteBuffer>, BufferStats.Gauges {
+    public static final String LEAK_DETECTION = "org.apache.johnzon.direct-buffer.leak-detection";
+    private static final boolean DEFAULT_LEAK_DETECTION = Boolean.getBoolean(LEAK_DETECTION); //default is false
+
+    private static final Logger LOGGER = Logger.getLogger(DirectByteBufferProvider.class.getName());
+
+    private final int size;
+    private final boolean leakDetection;
+    private final BufferStats stats;
+    //resolved lazily like the size classes of BufferStrategy.BOUNDED, the provider is serialized with its factory
+    private transient volatile BoundedBufferPool.SizeClass<ByteBuffer> pool;
+    private transient volatile LeakDetector leakDetector;
+
+    DirectByteBufferProvider(final int size) {
+        this(size, DEFAULT_LEAK_DETECTION);
+    }
+
+    DirectByteBufferProvider(final int size, final boolean leakDetection) {
+        this.size = size;
+        this.leakDetection = leakDetection;
+        this.stats = new BufferStats(BufferStrategy.DIRECT.name(), "direct", size, this);
+    }
+
+    @Override
+    public ByteBuffer newBuffer() {
+        stats.request();
+        ByteBuffer buffer = pool().poll();
+        if (buffer == null) {
+            stats.allocation();
+            buffer = ByteBuffer.allocateDirect(size);
+        } else {
+            buffer.clear();
+        }
+        if (leakDetection) {
+            leakDetector().taken(buffer);
+        }
+        return buffer;
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer) {
+        if (leakDetection) {
+            leakDetector().released(buffer);
+        }
+        stats.release();
+        if (buffer.capacity() != size || !pool().offer(buffer)) {
+            stats.drop();
+        }
+    }
+
+    @Override
+    public BufferStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public long retainedBytes() {
+        return pool().getRetainedBytes();
+    }
+
+    @Override
+    public long contention() {
+        return pool().getContention();
+    }
+
+    //number of buffers taken and neither released nor collected, only known with leak detection
+    int getOutstandingBuffers() {
+        return leakDetection ? leakDetector().outstanding() : -1;
+    }
+
+    private BoundedBufferPool.SizeClass<ByteBuffer> pool() {
+        BoundedBufferPool.SizeClass<ByteBuffer> current = pool;
+        if (current == null) {
+            current = BoundedBufferPool.INSTANCE.sizeClass("direct", size, 1);
+            pool = current;
+        }
+        return current;
+    }
+
+    //the buffers taken before the provider was serialized are not tracked by a deserialized one
+    private LeakDetector leakDetector() {
+        LeakDetector current = leakDetector;
+        if (current == null) {
+            synchronized (this) {
+                current = leakDetector;
+                if (current == null) {
+                    current = new LeakDetector();
+                    leakDetector = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    //the taken buffers are weakly referenced by their identity hash code, a reference enqueued by the gc is a leak
+    //only used for debugging so it is simply synchronized
+    private static final class LeakDetector {
+        private final ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<ByteBuffer>();
+        private final Map<Integer, List<Taken>> taken = new HashMap<Integer, List<Taken>>();
+
+        synchronized void taken(final ByteBuffer buffer) {
+            reportLeaks();
+            final Integer key = System.identityHashCode(buffer);
+            List<Taken> list = taken.get(key);
+            if (list == null) {
+                list = new ArrayList<Taken>(1);
+                taken.put(key, list);
+            }
+            list.add(new Taken(buffer, collected, new Throwable("Direct buffer taken here")));
+        }
+
+        synchronized void released(final ByteBuffer buffer) {
+            final Integer key = System.identityHashCode(buffer);
+            final List<Taken> list = taken.get(key);
+            if (list != null) {
+                for (final Iterator<Taken> it = list.iterator(); it.hasNext(); ) {
+                    if (it.next().get() == buffer) {
+                        it.remove();
+                        break;
+                    }
+                }
+                if (list.isEmpty()) {
+                    taken.remove(key);
+                }
+            }
+            reportLeaks();
+        }
+
+        synchronized int outstanding() {
+            reportLeaks();
+            int count = 0;
+            for (final List<Taken> list : taken.values()) {
+                count += list.size();
+            }
+            return count;
+        }
+
+        private void reportLeaks() {
+            Taken leaked;
+            while ((leaked = (Taken) collected.poll()) != null) {
+                final List<Taken> list = taken.get(leaked.key);
+                if (list != null && list.remove(leaked)) {
+                    if (list.isEmpty()) {
+                        taken.remove(leaked.key);
+                    }
+                    LOGGER.log(Level.SEVERE, "Direct buffer was not released, close the parser or generator using it", leaked.stack);
+                }
+            }
+        }
+    }
+
+    private static final class Taken extends WeakReference<ByteBuffer> {
+        private final Integer key;
+        private final Throwable stack;
+
+        private Taken(final ByteBuffer buffer, final ReferenceQueue<ByteBuffer> queue, final Throwable stack) {
+            super(buffer, queue);
+            this.key = System.identityHashCode(buffer);
+            this.stack = stack;
+        }
+    }
+}
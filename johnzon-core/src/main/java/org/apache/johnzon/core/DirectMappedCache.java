@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+
+//The slots of the bounded per-factory caches (SymbolTable, JsonStringTable, KeyCache, SerializedFormCache).
+//It is direct mapped: the hash selects one slot and a collision just replaces the entry, so the size is fixed.
+//No locking needed: the entries only have final (or volatile) fields and so are safely published,
+//a racy read sees either null or a complete entry.
+final class DirectMappedCache<T> implements Serializable {
+    private final Object[] slots;
+    private final int mask;
+
+    DirectMappedCache(final int size) {
+        int capacity = 1;
+        while (capacity < size && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    int slot(final int hash) {
+        return spread(hash) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(final int slot) {
+        return (T) slots[slot];
+    }
+
+    void set(final int slot, final T entry) {
+        slots[slot] = entry;
+    }
+
+    //hashes are mostly computed like String.hashCode(), mix the high bits in since only the low ones select the slot
+    static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    //String.hashCode() of the chars without creating the String
+    static int hash(final char[] chars, final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    static boolean equals(final String string, final char[] chars, final int start, final int end) {
+        final int length = end - start;
+        if (string.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (string.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
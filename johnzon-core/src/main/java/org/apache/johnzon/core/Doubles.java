@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+//Shortest round trip formatting of doubles in the format of Double.toString().
+//Handles 0 and the plain notation range 10^-3 <= |value| < 10^7 without allocation, everything else returns -1
+//and the caller falls back to Double.toString().
+//The digits are the smallest scale s for which an integer m with m / 10^s == value exists.
+//As long as m < 2^52 the check is exact (m and 10^s are exact doubles and the division is correctly rounded)
+//and there can't be two such integers, the rounding interval of the value is narrower than 1 at that scale.
+//Validity grows with the scale (m * 10 is valid for s + 1) so the scale is found by a binary search.
+final class Doubles {
+    //longest plain output: sign, 7 integer digits or "0." plus up to 19 fraction digits
+    static final int MAX_LENGTH = 32;
+
+    private static final double MIN_PLAIN = 1e-3;
+    private static final double MAX_PLAIN = 1e7;
+    private static final double MAX_UNSCALED = 4503599627370496d; //2^52
+    private static final int MAX_SCALE = 19; //10^19 <= 2^52 / 10^-3 and exact as a double
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_SCALE + 1];
+    static {
+        double power = 1;
+        for (int i = 0; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+
+    private Doubles() {
+        // no-op
+    }
+
+    static String toString(final double value) {
+        final char[] chars = new char[MAX_LENGTH];
+        final int length = format(value, chars);
+        return length < 0 ? Double.toString(value) : new String(chars, 0, length);
+    }
+
+    //writes the chars of value into chars (at least MAX_LENGTH long) and returns their number, -1 if not handled
+    static int format(final double value, final char[] chars) {
+        int pos = 0;
+        double abs = value;
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            chars[pos++] = '-';
+            abs = -value;
+        }
+
+        if (abs == 0) {
+            chars[pos++] = '0';
+            chars[pos++] = '.';
+            chars[pos++] = '0';
+            return pos;
+        }
+        if (!(abs >= MIN_PLAIN && abs < MAX_PLAIN)) { //also NaN
+            return -1;
+        }
+
+        int high = MAX_SCALE;
+        while (abs * POWERS_OF_TEN[high] >= MAX_UNSCALED) {
+            high--;
+        }
+        if (unscaled(abs, high) < 0) {
+            return -1;
+        }
+        int low = 0;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (unscaled(abs, middle) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        final int scale = low;
+        final long unscaled = unscaled(abs, scale);
+        final int digits = digitCount(unscaled);
+
+        if (digits <= scale) { //0.00ddd
+            chars[pos++] = '0';
+            chars[pos++] = '.';
+            for (int i = digits; i < scale; i++) {
+                chars[pos++] = '0';
+            }
+            return writeDigits(unscaled, chars, pos + digits);
+        }
+
+        //ddd.ddd with the point after digits - scale chars, ddd.0 for scale 0
+        final int end = pos + digits + 1 + (scale == 0 ? 1 : 0);
+        long remaining = unscaled;
+        int i = end;
+        if (scale == 0) {
+            chars[--i] = '0';
+        }
+        for (int s = 0; s < scale; s++) {
+            chars[--i] = (char) ('0' + (int) (remaining % 10));
+            remaining /= 10;
+        }
+        chars[--i] = '.';
+        writeDigits(remaining, chars, i);
+        return end;
+    }
+
+    //the integer m with m / 10^scale == value, -1 if there is none
+    private static long unscaled(final double value, final int scale) {
+        final double power = POWERS_OF_TEN[scale];
+        final long m = (long) Math.rint(value * power);
+        if (m / power == value) {
+            return m;
+        }
+        if (m > 1 && (m - 1) / power == value) {
+            return m - 1;
+        }
+        if ((m + 1) / power == value) {
+            return m + 1;
+        }
+        return -1;
+    }
+
+    //digits of a positive value ending before end, returns end
+    private static int writeDigits(long value, final char[] chars, final int end) {
+        int i = end;
+        do {
+            chars[--i] = (char) ('0' + (int) (value % 10));
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    private static int digitCount(final long value) {
+        int count = 1;
+        long limit = 10;
+        while (count < 19 && value >= limit) {
+            count++;
+            limit *= 10;
+        }
+        return count;
+    }
+}
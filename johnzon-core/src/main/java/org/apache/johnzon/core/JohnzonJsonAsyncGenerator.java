@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.nio.ByteBuffer;
+
+//Non blocking Json generator, the UTF-8 encoded output is handed to a Sink in ByteBuffers instead of being written to a stream.
+//A buffer is handed over when it is full, on flush() and on close(). The sink owns it until it passes it back with release(),
+//usually after it is written to the socket. Writing never blocks, isWritable() tells the producer to pause:
+//    while (generator.isWritable() && hasMoreData()) { write the next part }
+//    and continue once the sink released enough buffers.
+public interface JohnzonJsonAsyncGenerator extends JohnzonJsonGenerator {
+
+    interface Sink {
+        //a filled buffer, the content is between position (0) and limit
+        void accept(ByteBuffer buffer);
+
+        //the generator is closed, all buffers are handed over
+        void close();
+    }
+
+    //false while the configured number of buffers are handed to the sink and not released yet
+    //writes are still accepted and take new buffers
+    boolean isWritable();
+
+    //give back a buffer passed to Sink.accept(), it is reused for the following output
+    //the same ByteBuffer instance has to be passed back exactly once, else an IllegalStateException is thrown
+    void release(ByteBuffer buffer);
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.nio.ByteBuffer;
+
+//Non blocking Json parser, the UTF-8 encoded input is pushed by the caller as it arrives.
+//The JsonParser.Event enum can't be extended so the "need more input" state is signalled by poll() returning null.
+//There is no event for the end of the document either, like for a blocking parser hasNext() returns false then,
+//it never needs more input. Typical usage:
+//    parser.feed(bytes, 0, read);
+//    Event event;
+//    while (parser.hasNext() && (event = parser.poll()) != JohnzonJsonAsyncParser.NEED_MORE_INPUT) { ... }
+//After the end of the document poll() returns NEED_MORE_INPUT until endOfInput() is called and then throws
+//a NoSuchElementException like next(), so hasNext() has to be checked before.
+//hasNext(), next() and skipChildren() can be used as well if it is known that the input for them is already fed,
+//otherwise they throw an IllegalStateException. After endOfInput() all methods behave like the ones of a blocking parser.
+public interface JohnzonJsonAsyncParser extends JohnzonJsonParser {
+    Event NEED_MORE_INPUT = null;
+
+    //push more input, the bytes are copied
+    void feed(byte[] bytes, int offset, int length);
+
+    //push the remaining bytes of the buffer, they are copied and the position of the buffer is moved to its limit
+    void feed(ByteBuffer buffer);
+
+    //no more input will be pushed
+    void endOfInput();
+
+    //the next event or NEED_MORE_INPUT if the input pushed so far doesn't contain the complete next token
+    Event poll();
+}
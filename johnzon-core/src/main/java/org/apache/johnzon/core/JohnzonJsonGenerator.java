@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import javax.json.stream.JsonGenerator;
+
+//Johnzon specific extension of the JsonGenerator, implemented by the generators created by Johnzon.
+//Allows to write already serialized json (cached documents, responses of other services) without parsing it into a JsonValue.
+//The fragment has to be exactly one json value, it is copied as it is (also not indented by the pretty printer)
+//and only validated if org.apache.johnzon.generator-validate-raw is set on the factory.
+public interface JohnzonJsonGenerator extends JsonGenerator {
+
+    //write the fragment as array member or as the whole document
+    JsonGenerator writeRaw(CharSequence json);
+
+    JsonGenerator writeRaw(char[] json, int offset, int length);
+
+    //the fragment has to be UTF-8 encoded
+    JsonGenerator writeRaw(byte[] json, int offset, int length);
+
+    //write the fragment as object member
+    JsonGenerator writeRaw(String name, CharSequence json);
+
+    JsonGenerator writeRaw(String name, char[] json, int offset, int length);
+
+    JsonGenerator writeRaw(String name, byte[] json, int offset, int length);
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import javax.json.JsonArray;
+
+//Johnzon specific extension of the JsonArray, implemented by the arrays the reader creates for arrays of numbers only.
+//The numbers are kept as primitives, a JsonNumber is only created when a value is accessed as JsonValue.
+public interface JohnzonJsonNumberArray extends JsonArray {
+
+    //all values as long, the same as JsonNumber.longValue() per value
+    long[] toLongArray();
+
+    //all values as double, the same as JsonNumber.doubleValue() per value
+    double[] toDoubleArray();
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import javax.json.stream.JsonParser;
+
+//Johnzon specific extension of the JsonParser, implemented by the streaming parsers.
+//Allows to access strings, key names and numbers without creating a String per event.
+public interface JohnzonJsonParser extends JsonParser {
+
+    //the current string, key name or number as a view on the internal buffers of the parser
+    //the returned instance is reused and only valid until the next call to next() or close(),
+    //use toString() to keep the value
+    CharSequence getCharSequence();
+
+    //compare the current string, key name or number with the given chars without creating a String
+    boolean isCurrentValue(char[] chars);
+
+    //the current number as double, the same value as Double.parseDouble() would return
+    //but decimals with up to 16 digits and small exponents are converted without creating a String or BigDecimal
+    double getDouble();
+
+    //if the current event is START_OBJECT or START_ARRAY skip everything up to the matching END_OBJECT or END_ARRAY
+    //which then is the current event, for all other events this is a no-op
+    //the skipped content is only scanned for brackets and strings, no events are created and it is not fully validated
+    void skipChildren();
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+
+//Johnzon specific extension of the JsonParserFactory, implemented by the parser factory of Json.createParserFactory().
+public interface JohnzonJsonParserFactory extends JsonParserFactory {
+
+    //parse the file memory mapped window by window, see JsonParserFactoryImpl.MAPPED_WINDOW_LENGTH
+    //the charset is detected according to RFC 4627, only UTF-8 is mapped, other charsets are read as a stream
+    JsonParser createParser(File file);
+
+    //same as createParser(File) starting at the current position of the channel
+    //the channel is closed when the parser is closed
+    JsonParser createParser(FileChannel channel);
+
+    //parse the remaining bytes of the buffer (heap or direct) in place, the position of the buffer is not changed
+    //the charset is detected according to RFC 4627, only UTF-8 is tokenized in place, other charsets are read as a stream
+    JsonParser createParser(ByteBuffer buffer);
+
+    //parse a blocking channel, the bytes are tokenized without decoding them to chars first if the charset is UTF-8
+    //a non blocking SelectableChannel is rejected with an IllegalArgumentException, see createAsyncParser()
+    //a FileChannel is memory mapped, see createParser(FileChannel)
+    //the channel is closed when the parser is closed
+    JsonParser createParser(ReadableByteChannel channel);
+
+    //a parser the UTF-8 encoded input is pushed to, comments are not supported
+    JohnzonJsonAsyncParser createAsyncParser();
+}
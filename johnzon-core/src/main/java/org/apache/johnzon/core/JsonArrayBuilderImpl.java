@@ -59,13 +59,13 @@ class JsonArrayBuilderImpl implements JsonArrayBuilder, Serializable {
 
     @Override
     public JsonArrayBuilder add(final int value) {
-        addValue(new JsonLongImpl(value));
+        addValue(JsonLongImpl.valueOf(value));
         return this;
     }
 
     @Override
     public JsonArrayBuilder add(final long value) {
-        addValue(new JsonLongImpl(value));
+        addValue(JsonLongImpl.valueOf(value));
         return this;
     }
 
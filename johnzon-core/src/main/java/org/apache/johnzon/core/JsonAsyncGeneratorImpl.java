@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+//Compact UTF-8 generator handing the filled byte buffers to a Sink, see JohnzonJsonAsyncGenerator.
+//The buffers are wrapped as heap ByteBuffers, so the output is not copied again.
+//With BufferStrategy.DIRECT the bytes are copied into pooled direct buffers instead and the byte[] is reused,
+//a channel writes them without the extra copy it makes of heap buffers.
+//release() is usually called by another thread (the one writing to the socket) so the pending buffers are synchronized.
+//They are tracked by identity: releasing a buffer twice or one of another generator would hand the same byte[]
+//to two writers, so it is rejected.
+class JsonAsyncGeneratorImpl extends JsonUtf8GeneratorImpl implements JohnzonJsonAsyncGenerator {
+    private final JohnzonJsonAsyncGenerator.Sink sink;
+    private final BufferStrategy.BufferProvider<byte[]> byteBufferProvider;
+    private final BufferStrategy.BufferProvider<ByteBuffer> directBufferProvider;
+    private final int maxPendingBuffers;
+    private final Set<ByteBuffer> pendingBuffers = Collections.synchronizedSet(
+            Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>()));
+
+    //byteBufferProvider has to return a different buffer on each call as long as they are not released
+    JsonAsyncGeneratorImpl(final JohnzonJsonAsyncGenerator.Sink sink, final int maxPendingBuffers,
+            final BufferStrategy.BufferProvider<byte[]> byteBufferProvider, final BufferStrategy.BufferProvider<char[]> bufferProvider,
+            final BufferStrategy.BufferProvider<ByteBuffer> directBufferProvider, final KeyCache keyCache,
+            final SerializedFormCache serializedForms, final JsonParserFactoryImpl rawParserFactory) {
+        super(null, byteBufferProvider, bufferProvider, keyCache, serializedForms, rawParserFactory);
+        this.sink = sink;
+        this.maxPendingBuffers = maxPendingBuffers;
+        this.byteBufferProvider = byteBufferProvider;
+        this.directBufferProvider = directBufferProvider;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return pendingBuffers.size() < maxPendingBuffers;
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer) {
+        if (!pendingBuffers.remove(buffer)) {
+            throw new IllegalStateException("The buffer is not pending, it was already released or not handed over by this generator");
+        }
+        if (directBufferProvider != null) {
+            directBufferProvider.release(buffer);
+        } else {
+            byteBufferProvider.release(buffer.array());
+        }
+    }
+
+    @Override
+    byte[] flushBytes(final byte[] bytes, final int length) {
+        if (directBufferProvider != null) {
+            final ByteBuffer buffer = directBufferProvider.newBuffer();
+            buffer.put(bytes, 0, length);
+            buffer.flip();
+            pendingBuffers.add(buffer);
+            sink.accept(buffer);
+            return bytes;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        pendingBuffers.add(buffer);
+        sink.accept(buffer);
+        return byteBufferProvider.newBuffer();
+    }
+
+    @Override
+    void flushOutput() {
+        // no-op, the buffer is already handed to the sink
+    }
+
+    @Override
+    void closeOutput() throws IOException {
+        try {
+            super.closeOutput();
+        } finally {
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//This class represents either the Json tokenizer and the Json parser for UTF-8 encoded input pushed by the caller.
+//The pushed bytes are buffered, before an event is created the buffered bytes are pre-scanned to make sure
+//the complete next token is available. So the tokenizer never has to wait for input and needs no resumable state,
+//partial strings, escapes and surrogates are simply kept as bytes until the rest of the token arrives.
+class JsonAsyncParserImpl extends AbstractJsonUtf8StreamParser implements JohnzonJsonAsyncParser {
+
+    private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    //the pushed bytes which are not consumed yet, between 0 and availableCharsInBuffer
+    //grows if a token doesn't fit into it
+    private byte[] buffer;
+
+    private final byte[] pooledBuffer;
+    private final BufferStrategy.BufferProvider<byte[]> bufferProvider;
+
+    private boolean endOfInput;
+    private boolean bomChecked;
+
+    //state of the pre-scan of a string which is not complete yet, so it is not re-scanned from the start on every poll()
+    //it is only valid as long as bufferPos is stringScanFrom, next() could have been called directly in between
+    private int stringScanFrom;
+    private int stringScanStart = -1;
+    private int stringScanPos;
+    private boolean stringScanEscaped;
+
+    JsonAsyncParserImpl(final int maxStringLength, final SymbolTable symbolTable, final BufferStrategy.BufferProvider<byte[]> bufferProvider,
+            final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+
+        super(maxStringLength, symbolTable, valueBuffer);
+        this.pooledBuffer = bufferProvider.newBuffer();
+        this.buffer = pooledBuffer;
+        this.bufferProvider = bufferProvider;
+        this.bufferPos = -1;
+    }
+
+    @Override
+    public void feed(final byte[] bytes, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, availableCharsInBuffer, length);
+        availableCharsInBuffer += length;
+    }
+
+    @Override
+    public void feed(final ByteBuffer bytes) {
+        final int length = bytes.remaining();
+        ensureCapacity(length);
+        bytes.get(buffer, availableCharsInBuffer, length);
+        availableCharsInBuffer += length;
+    }
+
+    @Override
+    public void endOfInput() {
+        endOfInput = true;
+    }
+
+    //before endOfInput() the input after the document may still grow, so hasNext() only checks it for garbage afterwards
+    @Override
+    boolean isTrailingInputAvailable() {
+        return endOfInput && super.isTrailingInputAvailable();
+    }
+
+    //make room for "length" more bytes
+    //first drop the consumed bytes (but keep the current value) and grow the buffer only if that is not enough
+    private void ensureCapacity(final int length) {
+        if (endOfInput) {
+            throw new IllegalStateException("endOfInput() was already called");
+        }
+
+        if (availableCharsInBuffer + length <= buffer.length) {
+            return;
+        }
+
+        final int keep = startOfValueInBuffer > -1 ? Math.min(startOfValueInBuffer, bufferPos + 1) : bufferPos + 1;
+        if (keep > 0) {
+            consumed(keep);
+            System.arraycopy(buffer, keep, buffer, 0, availableCharsInBuffer - keep);
+            availableCharsInBuffer -= keep;
+            bufferPos -= keep;
+            if (startOfValueInBuffer > -1) {
+                startOfValueInBuffer -= keep;
+            }
+            if (endOfValueInBuffer > -1) {
+                endOfValueInBuffer -= keep;
+            }
+            if (stringScanStart > -1) {
+                stringScanFrom -= keep;
+                stringScanStart -= keep;
+                stringScanPos -= keep;
+            }
+        }
+
+        final int required = availableCharsInBuffer + length;
+        if (required > buffer.length) {
+            int newLength = buffer.length << 1;
+            if (newLength < required || newLength < 0) {
+                newLength = required;
+            }
+            final byte[] newBuffer = new byte[newLength];
+            System.arraycopy(buffer, 0, newBuffer, 0, availableCharsInBuffer);
+            buffer = newBuffer;
+        }
+    }
+
+    @Override
+    public Event poll() {
+        if (!skipBom() || (!endOfInput && !isNextTokenAvailable())) {
+            return NEED_MORE_INPUT;
+        }
+        return next();
+    }
+
+    //skip an UTF-8 BOM at the start of the input
+    //returns false if there are not enough bytes yet to decide it
+    private boolean skipBom() {
+        if (bomChecked) {
+            return true;
+        }
+
+        for (int i = 0; i < UTF8_BOM.length; i++) {
+            if (i >= availableCharsInBuffer) {
+                if (endOfInput) {
+                    bomChecked = true;
+                    return true;
+                }
+                return false;
+            }
+            if (buffer[i] != UTF8_BOM[i]) {
+                bomChecked = true;
+                return true;
+            }
+        }
+
+        //the BOM doesn't count for the location, like for the other parsers
+        bufferPos = UTF8_BOM.length - 1;
+        pastBufferReadCount = -UTF8_BOM.length;
+        skipped(UTF8_BOM.length);
+        bomChecked = true;
+        return true;
+    }
+
+    //pre-scan the buffered bytes, true if the next token is complete
+    //the tokenizer does the real validation, this only has to find the end of the token
+    private boolean isNextTokenAvailable() {
+        if (stringScanStart > -1 && stringScanFrom == bufferPos) {
+            return isStringAvailable();
+        }
+
+        int i = bufferPos + 1;
+
+        //whitespaces and separators are handled by next() before the token
+        while (i < availableCharsInBuffer) {
+            final byte b = buffer[i];
+            if (b != SPACE && b != TAB && b != CR && b != EOL && b != COMMA_CHAR && b != KEY_SEPARATOR) {
+                break;
+            }
+            i++;
+        }
+
+        //prevent DOS (denial of service) attack
+        if (i - bufferPos > maxValueLength) {
+            throw tmc();
+        }
+
+        if (i >= availableCharsInBuffer) {
+            return false;
+        }
+
+        switch (buffer[i]) {
+            case QUOTE_CHAR:
+                stringScanFrom = bufferPos;
+                stringScanStart = i;
+                stringScanPos = i + 1;
+                stringScanEscaped = false;
+                return isStringAvailable();
+            case TRUE_T:
+            case NULL_N:
+                return i + 4 <= availableCharsInBuffer;
+            case FALSE_F:
+                return i + 5 <= availableCharsInBuffer;
+            case MINUS:
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                return isNumberAvailable(i);
+            default:
+                //structural character or garbage, both are handled with a single char
+                return true;
+        }
+    }
+
+    private boolean isStringAvailable() {
+        int i = stringScanPos;
+        boolean escaped = stringScanEscaped;
+
+        while (i < availableCharsInBuffer) {
+            final byte b = buffer[i++];
+            if (escaped) {
+                escaped = false;
+            } else if (b == ESCAPE_CHAR) {
+                escaped = true;
+            } else if (b == QUOTE_CHAR) {
+                stringScanStart = -1;
+                return true;
+            }
+        }
+
+        //an escaped char has up to 6 bytes in the input (\\uXXXX)
+        if (i - stringScanStart > 6L * maxValueLength + 2) {
+            throw tmc();
+        }
+
+        stringScanPos = i;
+        stringScanEscaped = escaped;
+        return false;
+    }
+
+    //a number ends with the first non number char which has to be available too
+    private boolean isNumberAvailable(final int start) {
+        for (int i = start; i < availableCharsInBuffer; i++) {
+            final byte b = buffer[i];
+            if ((b < '0' || b > '9') && b != MINUS && b != PLUS && b != DOT && b != EXP_LOWERCASE && b != EXP_UPPERCASE) {
+                return true;
+            }
+        }
+
+        if (availableCharsInBuffer - start > maxValueLength) {
+            throw tmc();
+        }
+        return false;
+    }
+
+    //the whole structure has to be available, we can't stop in the middle of it
+    @Override
+    void skipStructure() {
+        if (!endOfInput && !isStructureAvailable()) {
+            throw new IllegalStateException("The structure is not completely fed yet");
+        }
+        super.skipStructure();
+    }
+
+    private boolean isStructureAvailable() {
+        int depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+
+        for (int i = bufferPos + 1; i < availableCharsInBuffer; i++) {
+            final byte b = buffer[i];
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == ESCAPE_CHAR) {
+                    escaped = true;
+                } else if (b == QUOTE_CHAR) {
+                    inString = false;
+                }
+            } else if (b == QUOTE_CHAR) {
+                inString = true;
+            } else if (b == START_OBJECT_CHAR || b == START_ARRAY_CHAR) {
+                depth++;
+            } else if ((b == END_OBJECT_CHAR || b == END_ARRAY_CHAR) && --depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //the buffer is never refilled, everything not consumed yet is still in it
+    @Override
+    protected final char readNextChar() {
+        if (bufferPos + 1 >= availableCharsInBuffer) {
+            if (endOfInput) {
+                availableCharsInBuffer = -1;
+                return EOF;
+            }
+            throw new IllegalStateException("More input has to be fed, see poll()");
+        }
+        return (char) (buffer[++bufferPos] & 0xFF);
+    }
+
+    @Override
+    final void skipStringChars() {
+        bufferPos = skipStringBytes(buffer, bufferPos, availableCharsInBuffer);
+    }
+
+    @Override
+    final byte byteAt(final int index) {
+        return buffer[index];
+    }
+
+    //ascii keys are looked up on the bytes, everything else is decoded first
+    @Override
+    String bufferValueAsKey(final SymbolTable symbols) {
+        final String key = symbols.getAscii(buffer, startOfValueInBuffer, endOfValueInBuffer);
+        if (key != null) {
+            return key;
+        }
+        return super.bufferValueAsKey(symbols);
+    }
+
+    @Override
+    void closeInput() throws IOException {
+        bufferProvider.release(pooledBuffer);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+//This class represents either the Json tokenizer and the Json parser for UTF-8 encoded input held in ByteBuffers.
+//The buffers (for instance memory mapped windows of a file) are tokenized in place,
+//nothing is copied into a byte[] or char[] before a value is requested.
+class JsonByteBufferParserImpl extends AbstractJsonUtf8StreamParser {
+
+    //the current window of the input
+    //only absolute gets are used, index 0 is the start of the window
+    private ByteBuffer buffer;
+
+    private final Source source;
+
+    //provides the input window by window
+    interface Source {
+        //the next window, it has to start with the last "carry" bytes of the current one and contain at least one more byte
+        //returns null if the input is exhausted
+        ByteBuffer next(int carry) throws IOException;
+
+        void close() throws IOException;
+    }
+
+    JsonByteBufferParserImpl(final Source source, final int maxStringLength, final SymbolTable symbolTable,
+            final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+
+        super(maxStringLength, symbolTable, valueBuffer);
+        this.source = source;
+    }
+
+    //read the next byte from the window and set/increment the bufferPos
+    //will also move to the next window if necessary
+    //if we are currently processing a value (string or number) and a new window
+    //is necessary decode the already read value part into the value buffer
+    @Override
+    protected final char readNextChar() {
+
+        if ((availableCharsInBuffer - bufferPos) <= 1) {
+            //next window
+
+            //bytes of an utf-8 sequence cut by the end of the window
+            //the next window starts with them and they are decoded together with the rest of the value
+            int carry = 0;
+
+            //copy content from old window to valuebuffer
+            //correct start end mark
+            if (startOfValueInBuffer > -1 && endOfValueInBuffer == -1) {
+                carry = incompleteSequenceLength(startOfValueInBuffer, availableCharsInBuffer);
+                endOfValueInBuffer = availableCharsInBuffer - carry;
+                copyCurrentValue();
+
+                startOfValueInBuffer = 0;
+            }
+
+            if (bufferPos >= -1) {
+                consumed(availableCharsInBuffer - carry);
+            }
+
+            try {
+                final ByteBuffer next = source.next(carry);
+                if (next == null) {
+                    availableCharsInBuffer = -1;
+                    return EOF;
+                }
+                buffer = next;
+                availableCharsInBuffer = next.limit();
+
+            } catch (final IOException e) {
+                close();
+                throw uexio(e);
+            }
+
+            bufferPos = carry;
+            //end next window
+        } else {
+            bufferPos++;
+        }
+
+        return (char) (buffer.get(bufferPos) & 0xFF);
+    }
+
+    @Override
+    final void skipStringChars() {
+        final ByteBuffer buffer = this.buffer;
+        final int last = availableCharsInBuffer - 1;
+        int pos = bufferPos;
+
+        //4 bytes per step, the non short-circuit | avoids a branch per byte
+        while (pos < last - 3) {
+            if (isStringStop(buffer.get(pos + 1)) | isStringStop(buffer.get(pos + 2)) | isStringStop(buffer.get(pos + 3))
+                    | isStringStop(buffer.get(pos + 4))) {
+                break;
+            }
+            pos += 4;
+        }
+        while (pos < last && !isStringStop(buffer.get(pos + 1))) {
+            pos++;
+        }
+
+        bufferPos = pos;
+    }
+
+    @Override
+    final byte byteAt(final int index) {
+        return buffer.get(index);
+    }
+
+    @Override
+    void closeInput() throws IOException {
+        buffer = null;
+        source.close();
+    }
+
+    //maps a file window by window, the OS page cache does the buffering
+    //there is no way to unmap a window explicitly, so it is released by the gc
+    static final class MappedFileSource implements Source {
+        private final FileChannel channel;
+        private final long end;
+        private final int windowLength;
+        private long position;
+
+        //windowLength must be at least 4, the longest utf-8 sequence, so each window contains at least one new byte
+        MappedFileSource(final FileChannel channel, final long start, final int windowLength) throws IOException {
+            this.channel = channel;
+            this.position = start;
+            this.end = channel.size();
+            this.windowLength = windowLength;
+        }
+
+        @Override
+        public ByteBuffer next(final int carry) throws IOException {
+            if (position >= end) {
+                return null;
+            }
+
+            final long start = position - carry;
+            final long length = Math.min(windowLength, end - start);
+            position = start + length;
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    //a single buffer, heap or direct
+    static final class SingleBufferSource implements Source {
+        private ByteBuffer buffer;
+
+        //index 0 of the buffer has to be the start of the input, see ByteBuffer.slice()
+        SingleBufferSource(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public ByteBuffer next(final int carry) {
+            final ByteBuffer next = buffer;
+            buffer = null;
+            return next == null || next.limit() == 0 ? null : next;
+        }
+
+        @Override
+        public void close() {
+            buffer = null;
+        }
+    }
+
+    //reads a channel into a pooled buffer, a byte[] wrapped in buffer or a direct buffer which is the buffer itself
+    //the channel is expected to be blocking, a non blocking channel would be polled until it provides data
+    static final class ChannelSource<T> implements Source {
+        private final ReadableByteChannel channel;
+        private final BufferStrategy.BufferProvider<T> bufferProvider;
+        private final T pooled;
+        private final ByteBuffer buffer;
+
+        //bytes already read at the beginning of the buffer before the first window is requested
+        private int pending;
+
+        ChannelSource(final ReadableByteChannel channel, final BufferStrategy.BufferProvider<T> bufferProvider,
+                final T pooled, final ByteBuffer buffer, final int pending) {
+            this.channel = channel;
+            this.bufferProvider = bufferProvider;
+            this.pooled = pooled;
+            this.buffer = buffer;
+            this.pending = pending;
+        }
+
+        @Override
+        public ByteBuffer next(final int carry) throws IOException {
+            final int start;
+            if (pending > 0) { //first window, nothing to carry
+                start = pending;
+                pending = 0;
+            } else {
+                if (carry > 0) {
+                    buffer.position(buffer.limit() - carry);
+                    buffer.compact();
+                }
+                start = carry;
+            }
+
+            buffer.clear();
+            buffer.position(start);
+
+            int read;
+            do {
+                read = channel.read(buffer);
+                if (read == 0 && channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+                    throw new IllegalStateException("The channel was switched to non blocking mode");
+                }
+            } while (read == 0 && buffer.hasRemaining());
+
+            if (buffer.position() == carry) {
+                return null;
+            }
+
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            bufferProvider.release(pooled);
+            channel.close();
+        }
+    }
+}
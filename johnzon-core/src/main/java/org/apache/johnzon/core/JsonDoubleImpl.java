@@ -87,7 +87,7 @@ final class JsonDoubleImpl implements JsonNumber {
 
     @Override
     public String toString() {
-        return Double.toString(value);
+        return Doubles.toString(value);
     }
 
     @Override
@@ -21,64 +21,120 @@ package org.apache.johnzon.core;
 import static java.util.Arrays.asList;
 
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
 
 import javax.json.stream.JsonGenerator;
-import javax.json.stream.JsonGeneratorFactory;
 
-public class JsonGeneratorFactoryImpl extends AbstractJsonFactory implements JsonGeneratorFactory {    
+public class JsonGeneratorFactoryImpl extends AbstractJsonFactory implements JohnzonJsonGeneratorFactory {    
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
     public static final String GENERATOR_BUFFER_LENGTH = "org.apache.johnzon.default-char-buffer-generator";
     public static final int DEFAULT_GENERATOR_BUFFER_LENGTH =  Integer.getInteger(GENERATOR_BUFFER_LENGTH, 64 * 1024); //64k
    
+    //keep the compact serialized form of the written JsonObject/JsonArray instances of Johnzon, see SerializedFormCache
+    //writing them again is then a copy of the chars (or UTF-8 bytes), useful if the same structures are written over and over
+    //ignored for pretty printing
+    public static final String SERIALIZED_FORM_CACHE = "org.apache.johnzon.serialized-form-cache";
+    public static final boolean DEFAULT_SERIALIZED_FORM_CACHE = Boolean.getBoolean(SERIALIZED_FORM_CACHE); //default is false
+
+    //number of structures the serialized form cache keeps, a structure written later can replace one written before
+    public static final String SERIALIZED_FORM_CACHE_SIZE = "org.apache.johnzon.serialized-form-cache-size";
+    public static final int DEFAULT_SERIALIZED_FORM_CACHE_SIZE = Integer.getInteger(SERIALIZED_FORM_CACHE_SIZE, 1024);
+
+    //number of escaped keys shared by the generators of this factory, see KeyCache
+    //0 disables the cache
+    public static final String KEY_CACHE_SIZE = "org.apache.johnzon.generator-key-cache-size";
+    public static final int DEFAULT_KEY_CACHE_SIZE = Integer.getInteger(KEY_CACHE_SIZE, 512);
+
+    //parse the fragments passed to JohnzonJsonGenerator.writeRaw() before they are written
+    public static final String VALIDATE_RAW = "org.apache.johnzon.generator-validate-raw";
+    public static final boolean DEFAULT_VALIDATE_RAW = Boolean.getBoolean(VALIDATE_RAW); //default is false
+
+    //number of buffers an async generator hands to its sink before isWritable() returns false, see JohnzonJsonAsyncGenerator
+    public static final String ASYNC_MAX_PENDING_BUFFERS = "org.apache.johnzon.generator-async-max-pending-buffers";
+    public static final int DEFAULT_ASYNC_MAX_PENDING_BUFFERS = Integer.getInteger(ASYNC_MAX_PENDING_BUFFERS, 4);
+
     static final Collection<String> SUPPORTED_CONFIG_KEYS = asList(
-        JsonGenerator.PRETTY_PRINTING, GENERATOR_BUFFER_LENGTH, BUFFER_STRATEGY
+        JsonGenerator.PRETTY_PRINTING, GENERATOR_BUFFER_LENGTH, BUFFER_STRATEGY, BUFFER_STATS_JMX, SERIALIZED_FORM_CACHE,
+        SERIALIZED_FORM_CACHE_SIZE, KEY_CACHE_SIZE, VALIDATE_RAW, ASYNC_MAX_PENDING_BUFFERS
     );
-    //key caching currently disabled
-    private final ConcurrentMap<String, String> cache = null;//new ConcurrentHashMap<String, String>();
+    private final KeyCache keyCache;
+    private final JsonParserFactoryImpl rawParserFactory;
     private final boolean pretty;
+    private final SerializedFormCache serializedForms;
     private final BufferStrategy.BufferProvider<char[]> bufferProvider;
+    private final BufferStrategy.BufferProvider<byte[]> byteBufferProvider;
+    //the buffers of async generators are in use by the sink at the same time, so they are always pooled in a queue
+    private final BufferStrategy.BufferProvider<byte[]> asyncBufferProvider;
+    private final int asyncMaxPendingBuffers;
+    //only with BufferStrategy.DIRECT, the async generators hand direct buffers to their sink
+    private final BufferStrategy.BufferProvider<ByteBuffer> directBufferProvider;
 
     public JsonGeneratorFactoryImpl(final Map<String, ?> config) {
         
           super(config, SUPPORTED_CONFIG_KEYS, null); 
           
           this.pretty = getBool(JsonGenerator.PRETTY_PRINTING, false);
+          this.serializedForms = getBool(SERIALIZED_FORM_CACHE, DEFAULT_SERIALIZED_FORM_CACHE)
+                  ? new SerializedFormCache(getInt(SERIALIZED_FORM_CACHE_SIZE, DEFAULT_SERIALIZED_FORM_CACHE_SIZE)) : null;
+          final int keyCacheSize = getInt(KEY_CACHE_SIZE, DEFAULT_KEY_CACHE_SIZE);
+          this.keyCache = keyCacheSize > 0 ? new KeyCache(keyCacheSize) : null;
+          this.rawParserFactory = getBool(VALIDATE_RAW, DEFAULT_VALIDATE_RAW)
+                  ? new JsonParserFactoryImpl(Collections.<String, Object>emptyMap()) : null;
           
           final int bufferSize = getInt(GENERATOR_BUFFER_LENGTH, DEFAULT_GENERATOR_BUFFER_LENGTH);
           if (bufferSize <= 0) {
               throw new IllegalArgumentException("buffer length must be greater than zero");
           }
 
-          this.bufferProvider = getBufferProvider().newCharProvider(bufferSize);
+          final BufferStrategy bufferStrategy = getBufferProvider();
+          this.bufferProvider = instrument("char", bufferStrategy.newCharProvider(bufferSize));
+          this.byteBufferProvider = instrument("byte", bufferStrategy.newByteProvider(bufferSize));
+          this.asyncBufferProvider = instrument("async", BufferStrategy.QUEUE.newByteProvider(bufferSize));
+          this.asyncMaxPendingBuffers = getInt(ASYNC_MAX_PENDING_BUFFERS, DEFAULT_ASYNC_MAX_PENDING_BUFFERS);
+          this.directBufferProvider = bufferStrategy == BufferStrategy.DIRECT ? instrument("direct", new DirectByteBufferProvider(bufferSize)) : null;
     }
 
     @Override
     public JsonGenerator createGenerator(final Writer writer) {
         if (pretty) {
-            return new JsonPrettyGeneratorImpl(writer, bufferProvider, cache);
+            return new JsonPrettyGeneratorImpl(writer, bufferProvider, keyCache, rawParserFactory);
         }
-        return new JsonGeneratorImpl(writer, bufferProvider, cache);
+        return new JsonGeneratorImpl(writer, bufferProvider, keyCache, serializedForms, rawParserFactory);
     }
 
     @Override
     public JsonGenerator createGenerator(final OutputStream out) {
         if (pretty) {
-            return new JsonPrettyGeneratorImpl(out, bufferProvider, cache);
+            return new JsonPrettyGeneratorImpl(out, bufferProvider, keyCache, rawParserFactory);
         }
-        return new JsonGeneratorImpl(out, bufferProvider, cache);
+        return new JsonUtf8GeneratorImpl(out, byteBufferProvider, bufferProvider, keyCache, serializedForms, rawParserFactory);
     }
 
     @Override
     public JsonGenerator createGenerator(final OutputStream out, final Charset charset) {
         if (pretty) {
-            return new JsonPrettyGeneratorImpl(out,charset, bufferProvider, cache);
+            return new JsonPrettyGeneratorImpl(out,charset, bufferProvider, keyCache, rawParserFactory);
+        }
+        if (UTF8_CHARSET.equals(charset)) {
+            return new JsonUtf8GeneratorImpl(out, byteBufferProvider, bufferProvider, keyCache, serializedForms, rawParserFactory);
+        }
+        return new JsonGeneratorImpl(new OutputStreamWriter(out, charset), bufferProvider, keyCache, serializedForms, rawParserFactory);
+    }
+
+    @Override
+    public JohnzonJsonAsyncGenerator createAsyncGenerator(final JohnzonJsonAsyncGenerator.Sink sink) {
+        if (pretty) {
+            throw new UnsupportedOperationException("Pretty printing is not supported by the async generator");
         }
-        return new JsonGeneratorImpl(out,charset, bufferProvider, cache);
+        return new JsonAsyncGeneratorImpl(sink, asyncMaxPendingBuffers, asyncBufferProvider, bufferProvider, directBufferProvider,
+                keyCache, serializedForms, rawParserFactory);
     }
 
     @Override
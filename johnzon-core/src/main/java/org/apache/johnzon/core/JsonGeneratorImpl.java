@@ -18,17 +18,19 @@
  */
 package org.apache.johnzon.core;
 
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.StringReader;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentMap;
 
 import javax.json.JsonArray;
 import javax.json.JsonException;
@@ -39,21 +41,35 @@ import javax.json.JsonStructure;
 import javax.json.JsonValue;
 import javax.json.stream.JsonGenerationException;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParsingException;
 
-class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
+class JsonGeneratorImpl implements JohnzonJsonGenerator, JsonChars, Serializable {
     private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+    //buffers of the generators creating serialized forms, see serialize()
+    private static final BufferStrategy.BufferProvider<char[]> SERIALIZE_BUFFERS = BufferStrategy.BY_INSTANCE.newCharProvider(1024);
 
     private final transient Writer writer;
     private final BufferStrategy.BufferProvider<char[]> bufferProvider;
     private final char[] buffer;
     private int bufferPos = 0;
-    //private final ConcurrentMap<String, String> cache;
+    //escaped keys shared by the generators of a factory, null if disabled
+    private final KeyCache keyCache;
     protected boolean needComma = false;
 
     private StructureElement currentStructureElement = null;
     private boolean valid = false;
     protected int depth = 0;
 
+    //the compact forms of written JsonObjectImpl and JsonArrayImpl, copied on the next write, null if disabled
+    private final SerializedFormCache serializedForms;
+    //true while the members of a structure are written, only the structures passed to write() get a serialized form
+    private boolean writingMembers = false;
+    //scratch for writeDouble0()
+    private char[] doubleChars;
+    //parses raw fragments before they are written, null if they are not validated
+    private final transient JsonParserFactoryImpl rawParserFactory;
+
     //minimal stack implementation
     private static final class StructureElement implements Serializable{
         final StructureElement previous;
@@ -67,21 +83,40 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
     }
 
     JsonGeneratorImpl(final Writer writer, final BufferStrategy.BufferProvider<char[]> bufferProvider,
-            final ConcurrentMap<String, String> cache) {
+            final KeyCache keyCache) {
+        this(writer, bufferProvider, keyCache, null, null);
+    }
+
+    JsonGeneratorImpl(final Writer writer, final BufferStrategy.BufferProvider<char[]> bufferProvider,
+            final KeyCache keyCache, final SerializedFormCache serializedForms, final JsonParserFactoryImpl rawParserFactory) {
         this.writer = writer;
-        //this.cache = cache;
+        this.keyCache = keyCache;
         this.buffer = bufferProvider.newBuffer();
         this.bufferProvider = bufferProvider;
+        this.serializedForms = serializedForms;
+        this.rawParserFactory = rawParserFactory;
+    }
+
+    //for subclasses which write to their own output and buffer, they override the justWrite() methods,
+    //writeEscaped0(), flushBuffer(), flushOutput(), closeOutput() and writeSerializedForm()
+    JsonGeneratorImpl(final BufferStrategy.BufferProvider<char[]> bufferProvider, final KeyCache keyCache,
+            final SerializedFormCache serializedForms, final JsonParserFactoryImpl rawParserFactory) {
+        this.writer = null;
+        this.keyCache = keyCache;
+        this.buffer = null;
+        this.bufferProvider = bufferProvider;
+        this.serializedForms = serializedForms;
+        this.rawParserFactory = rawParserFactory;
     }
 
     JsonGeneratorImpl(final OutputStream out, final BufferStrategy.BufferProvider<char[]> bufferProvider,
-            final ConcurrentMap<String, String> cache) {
-        this(new OutputStreamWriter(out, UTF8_CHARSET), bufferProvider, cache);
+            final KeyCache keyCache) {
+        this(new OutputStreamWriter(out, UTF8_CHARSET), bufferProvider, keyCache);
     }
 
     JsonGeneratorImpl(final OutputStream out, final Charset encoding, final BufferStrategy.BufferProvider<char[]> bufferProvider,
-            final ConcurrentMap<String, String> cache) {
-        this(new OutputStreamWriter(out, encoding), bufferProvider, cache);
+            final KeyCache keyCache) {
+        this(new OutputStreamWriter(out, encoding), bufferProvider, keyCache);
     }
 
     protected void addCommaIfNeeded() {
@@ -92,33 +127,18 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
 
     }
 
-    //caching currently disabled
-    //two problems:
-    // 1) not easy to get the escaped value efficiently wen its streamed and the buffer is full and needs to be flushed
-    // 2) we have to use a kind of bounded threadsafe map to let the cache not grow indefinitely
+    //a cached key is one copy of "key": which works even if the buffer is flushed in between, see justWrite(char[])
     private void writeCachedOrEscape(final String name) {
-      /*  String k = cache.get(name);
-        
-        if (k == null) {
-                
-                justWrite(QUOTE_CHAR);
-                int start = bufferPos;
-                writeEscaped0(name);
-                int end = bufferPos;
-                String escaped= get from buffer
-                ---
-                //FIXME if buffer is flushed this will not work here
-                cache.putIfAbsent(name, escaped);
-                justWrite(QUOTE_CHAR);
-                justWrite(KEY_SEPARATOR);
-        }else*/
-        {
-            justWrite(QUOTE_CHAR);
-            writeEscaped0(name);
-            justWrite(QUOTE_CHAR);
-            justWrite(KEY_SEPARATOR);
+        final char[] escaped = keyCache == null ? null : keyCache.get(name);
+        if (escaped != null) {
+            justWrite(escaped);
+            return;
         }
 
+        justWrite(QUOTE_CHAR);
+        writeEscaped0(name);
+        justWrite(QUOTE_CHAR);
+        justWrite(KEY_SEPARATOR);
     }
 
     @Override
@@ -218,22 +238,28 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
         switch (value.getValueType()) {
             case ARRAY:
                 writeStartArray(name);
+                final boolean arrayMembers = writingMembers;
+                writingMembers = true;
                 final JsonArray array = JsonArray.class.cast(value);
                 final Iterator<JsonValue> ait = array.iterator();
                 while (ait.hasNext()) {
                     write(ait.next());
                 }
+                writingMembers = arrayMembers;
                 writeEnd();
 
                 break;
             case OBJECT:
                 writeStartObject(name);
+                final boolean objectMembers = writingMembers;
+                writingMembers = true;
                 final JsonObject object = JsonObject.class.cast(value);
                 final Iterator<Map.Entry<String, JsonValue>> oit = object.entrySet().iterator();
                 while (oit.hasNext()) {
                     final Map.Entry<String, JsonValue> keyval = oit.next();
                     write(keyval.getKey(), keyval.getValue());
                 }
+                writingMembers = objectMembers;
                 writeEnd();
 
                 break;
@@ -271,22 +297,28 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
         switch (value.getValueType()) {
             case ARRAY:
                 writeStartArray();
+                final boolean arrayMembers = writingMembers;
+                writingMembers = true;
                 final JsonArray array = JsonArray.class.cast(value);
                 final Iterator<JsonValue> ait = array.iterator();
                 while (ait.hasNext()) {
                     write(ait.next());
                 }
+                writingMembers = arrayMembers;
                 writeEnd();
 
                 break;
             case OBJECT:
                 writeStartObject();
+                final boolean objectMembers = writingMembers;
+                writingMembers = true;
                 final JsonObject object = JsonObject.class.cast(value);
                 final Iterator<Map.Entry<String, JsonValue>> oit = object.entrySet().iterator();
                 while (oit.hasNext()) {
                     final Map.Entry<String, JsonValue> keyval = oit.next();
                     write(keyval.getKey(), keyval.getValue());
                 }
+                writingMembers = objectMembers;
                 writeEnd();
 
                 break;
@@ -318,10 +350,49 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
 
     @Override
     public JsonGenerator write(final String name, final JsonValue value) {
+        final SerializedFormCache.Form serialized = serializedForm(value);
+        if (serialized != null) {
+            checkObject();
+            addCommaIfNeeded();
+            writeCachedOrEscape(name);
+            writeSerializedForm(serialized);
+            needComma = true;
+            return this;
+        }
+
         writeJsonValue(name, value);
         return this;
     }
 
+    //the compact form of the structure if it is cached or can be cached, null if the value is written as usual
+    private SerializedFormCache.Form serializedForm(final JsonValue value) {
+        if (serializedForms == null || writingMembers
+                || (!JsonObjectImpl.class.isInstance(value) && !JsonArrayImpl.class.isInstance(value))) {
+            return null;
+        }
+
+        final SerializedFormCache.Form form = serializedForms.get(value);
+        if (form != null) {
+            return form;
+        }
+        return serializedForms.put(value, serialize(value));
+    }
+
+    //copy a cached form in one go
+    void writeSerializedForm(final SerializedFormCache.Form form) {
+        justWrite(form.chars());
+    }
+
+    //written by a compact generator without the serialized form cache, so the form is exactly what writeJsonValue() would write
+    //its buffer is its own, a buffer of the bufferProvider could be the one of this generator (e.g. BufferStrategy.SINGLETON)
+    private char[] serialize(final JsonValue value) {
+        final CharArrayWriter out = new CharArrayWriter();
+        final JsonGeneratorImpl generator = new JsonGeneratorImpl(out, SERIALIZE_BUFFERS, keyCache);
+        generator.write(value);
+        generator.close();
+        return out.toCharArray();
+    }
+
 
     @Override
     public JsonGenerator write(final String name, final String value) {
@@ -384,7 +455,8 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
         checkDoubleRange(value);
         addCommaIfNeeded();
         writeCachedOrEscape(name);
-        noCheckWriteAndForceComma(String.valueOf(value));
+        writeDouble0(value);
+        needComma = true;
         return this;
     }
 
@@ -423,6 +495,21 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
 
     @Override
     public JsonGenerator write(final JsonValue value) {
+        final SerializedFormCache.Form serialized = serializedForm(value);
+        if (serialized != null) {
+            if (currentStructureElement == null && valid) {
+                throw new JsonGenerationException("Method must not be called more than once in no context");
+            }
+            if (currentStructureElement != null) {
+                checkArray();
+            }
+            addCommaIfNeeded();
+            writeSerializedForm(serialized);
+            needComma = true;
+            valid = true;
+            return this;
+        }
+
         writeJsonValue(value);
 
         if (JsonStructure.class.isInstance(value)) {
@@ -431,6 +518,128 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
         return this;
     }
 
+    @Override
+    public JsonGenerator writeRaw(final CharSequence json) {
+        validateRaw(json);
+        startRawValue();
+        justWrite(json.toString());
+        endRawValue();
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final char[] json, final int offset, final int length) {
+        validateRaw(CharBuffer.wrap(json, offset, length));
+        startRawValue();
+        justWrite(json, offset, length);
+        endRawValue();
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final byte[] json, final int offset, final int length) {
+        validateRaw(json, offset, length);
+        startRawValue();
+        justWriteUtf8(json, offset, length);
+        endRawValue();
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final String name, final CharSequence json) {
+        validateRaw(json);
+        startRawMember(name);
+        justWrite(json.toString());
+        needComma = true;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final String name, final char[] json, final int offset, final int length) {
+        validateRaw(CharBuffer.wrap(json, offset, length));
+        startRawMember(name);
+        justWrite(json, offset, length);
+        needComma = true;
+        return this;
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final String name, final byte[] json, final int offset, final int length) {
+        validateRaw(json, offset, length);
+        startRawMember(name);
+        justWriteUtf8(json, offset, length);
+        needComma = true;
+        return this;
+    }
+
+    //like a JsonValue written with write(JsonValue) a raw value is an array member or the whole document
+    private void startRawValue() {
+        if (currentStructureElement == null && valid) {
+            throw new JsonGenerationException("Method must not be called more than once in no context");
+        }
+        if (currentStructureElement != null) {
+            checkArray();
+        }
+        addCommaIfNeeded();
+    }
+
+    private void endRawValue() {
+        needComma = true;
+        valid = true;
+    }
+
+    private void startRawMember(final String name) {
+        checkObject();
+        addCommaIfNeeded();
+        writeCachedOrEscape(name);
+    }
+
+    private void validateRaw(final CharSequence json) {
+        if (rawParserFactory != null) {
+            final String wrapped = "[" + json + "]";
+            validateRaw(rawParserFactory.createInternalParser(new StringReader(wrapped)), wrapped.length());
+        }
+    }
+
+    private void validateRaw(final byte[] json, final int offset, final int length) {
+        if (rawParserFactory != null) {
+            validateRaw(new String(json, offset, length, UTF8_CHARSET));
+        }
+    }
+
+    //the fragment is parsed wrapped into an array, the parser only accepts objects and arrays as documents,
+    //the array must contain exactly one value and end with the last char, else the fragment closed it early (e.g. 1]x)
+    private static void validateRaw(final JsonParser parser, final int length) {
+        try {
+            int depth = 0;
+            int values = 0;
+            while (parser.hasNext()) {
+                final JsonParser.Event event = parser.next();
+                if (depth == 1 && event != JsonParser.Event.END_ARRAY) {
+                    values++;
+                }
+                if (event == JsonParser.Event.START_ARRAY || event == JsonParser.Event.START_OBJECT) {
+                    depth++;
+                } else if (event == JsonParser.Event.END_ARRAY || event == JsonParser.Event.END_OBJECT) {
+                    depth--;
+                    if (depth == 0) {
+                        if (parser.getLocation().getStreamOffset() != length) {
+                            throw new JsonGenerationException("Raw json must be exactly one value but has trailing content");
+                        }
+                        break;
+                    }
+                }
+            }
+            if (values != 1) {
+                throw new JsonGenerationException("Raw json must be exactly one value but got " + values);
+            }
+        } catch (final JsonParsingException e) {
+            throw new JsonGenerationException("Invalid raw json: " + e.getMessage(), e);
+        } finally {
+            parser.close();
+        }
+    }
+
     @Override
     public JsonGenerator write(final String value) {
         checkArray();
@@ -481,7 +690,8 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
     public JsonGenerator write(final double value) {
         checkArray();
         checkDoubleRange(value);
-        noCheckWrite(Double.toString(value));
+        addCommaIfNeeded();
+        writeDouble0(value);
         needComma = true;
         return this;
     }
@@ -515,12 +725,10 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
             flushBuffer();
 
             try {
-                writer.close();
+                closeOutput();
             } catch (final IOException e) {
                 throw new JsonException(e.getMessage(), e);
             }
-
-            bufferProvider.release(buffer);
         }
     }
 
@@ -530,12 +738,24 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
         flushBuffer();
 
         try {
-            writer.flush();
+            flushOutput();
         } catch (final IOException e) {
             throw new JsonException(e.getMessage(), e);
         }
     }
 
+    void flushOutput() throws IOException {
+        writer.flush();
+    }
+
+    void closeOutput() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            bufferProvider.release(buffer);
+        }
+    }
+
     private JsonGenerator noCheckWriteAndForceComma(final String value) {
         noCheckWrite(value);
         needComma = true;
@@ -558,7 +778,7 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
         justWrite(value);
     }
 
-    private void flushBuffer() {
+    void flushBuffer() {
 
         if (bufferPos > 0) {
 
@@ -572,7 +792,7 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
         }
     }
 
-    private void writeEscaped0(final String value) {
+    void writeEscaped0(final String value) {
         int len = 0;
         if (value == null || (len = value.length()) == 0) {
             return;
@@ -634,7 +854,7 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
     private static final String UNICODE_PREFIX = "\\u";
     private static final String UNICODE_PREFIX_HELPER = "000";
 
-    private static String toUnicode(final char c) {
+    static String toUnicode(final char c) {
 
         final String hex = UNICODE_PREFIX_HELPER + Integer.toHexString(c);
         final String s = UNICODE_PREFIX + hex.substring(hex.length() - 4);
@@ -643,16 +863,26 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
     }
 
     protected void justWrite(final char[] chars) {
+        justWrite(chars, 0, chars.length);
+    }
 
-        if (bufferPos + chars.length >= buffer.length) {
+    //UTF-8 encoded bytes of a raw fragment
+    void justWriteUtf8(final byte[] bytes, final int offset, final int length) {
+        justWrite(new String(bytes, offset, length, UTF8_CHARSET));
+    }
 
-            int start = 0;
+    protected void justWrite(final char[] chars, final int offset, final int length) {
+
+        if (bufferPos + length >= buffer.length) {
+
+            final int charsEnd = offset + length;
+            int start = offset;
             int len = buffer.length - bufferPos;
 
             while (true) {
                 int end = start + len;
-                if (end > chars.length) {
-                    end = chars.length;
+                if (end > charsEnd) {
+                    end = charsEnd;
                 }
 
                 System.arraycopy(chars, start, buffer, bufferPos, end - start);
@@ -660,7 +890,7 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
                 bufferPos += (end - start);
                 start += (len);
 
-                if (start >= chars.length) {
+                if (start >= charsEnd) {
                     return;
                 }
 
@@ -673,8 +903,8 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
 
         } else {
             //fits completely into the buffer
-            System.arraycopy(chars, 0, buffer, bufferPos, chars.length);
-            bufferPos += chars.length;
+            System.arraycopy(chars, offset, buffer, bufferPos, length);
+            bufferPos += length;
         }
 
     }
@@ -746,6 +976,21 @@ class JsonGeneratorImpl implements JsonGenerator, JsonChars, Serializable {
     }
     
     
+    //the common doubles are formatted without allocation, see Doubles
+    private void writeDouble0(final double value) {
+        if (doubleChars == null) {
+            doubleChars = new char[Doubles.MAX_LENGTH];
+        }
+        final int length = Doubles.format(value, doubleChars);
+        if (length < 0) {
+            justWrite(Double.toString(value));
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            justWrite(doubleChars[i]);
+        }
+    }
+
     //unopitimized, see below
     private void writeLong0(final long i) {
 
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonStructure;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParsingException;
+
+//reads the whole input into memory and indexes it, see JsonTape
+//the values of the returned structure are created when they are accessed
+class JsonIndexedReaderImpl implements JsonReader {
+    private final Reader reader;
+    private final JsonParserFactoryImpl parserFactory;
+    private final JsonStringTable stringTable;
+    private boolean closed = false;
+
+    JsonIndexedReaderImpl(final Reader reader, final JsonParserFactoryImpl parserFactory, final JsonStringTable stringTable) {
+        this.reader = reader;
+        this.parserFactory = parserFactory;
+        this.stringTable = stringTable;
+    }
+
+    @Override
+    public JsonStructure read() {
+
+        checkClosed();
+
+        char[] chars = new char[8 * 1024];
+        int length = 0;
+        try {
+            int read;
+            while ((read = reader.read(chars, length, chars.length - length)) >= 0) {
+                length += read;
+                if (length == chars.length) {
+                    final char[] newChars = new char[chars.length << 1];
+                    System.arraycopy(chars, 0, newChars, 0, length);
+                    chars = newChars;
+                }
+            }
+        } catch (final IOException e) {
+            close();
+            throw new JsonException("Unable to read the document due to " + e.getMessage(), e);
+        }
+
+        final JsonStreamParserImpl parser = parserFactory.createInternalParser(chars, length);
+        try {
+            if (!parser.hasNext()) {
+                throw new IllegalStateException("Nothing to read");
+            }
+            final JsonParser.Event root = parser.next();
+            if (root != JsonParser.Event.START_OBJECT && root != JsonParser.Event.START_ARRAY) {
+                throw new JsonParsingException("Unknown structure: " + root, parser.getLocation());
+            }
+            final JsonStructure structure = JsonTape.read(parser, chars, root, stringTable);
+            if (parser.hasNext()) {
+                throw new JsonParsingException("Expected end of file", parser.getLocation());
+            }
+            return structure;
+        } finally {
+            parser.close();
+            close();
+        }
+    }
+
+    @Override
+    public JsonObject readObject() {
+        return JsonObject.class.cast(read());
+    }
+
+    @Override
+    public JsonArray readArray() {
+        return JsonArray.class.cast(read());
+    }
+
+    @Override
+    public void close() {
+
+        if (!closed) {
+            closed = true;
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                throw new JsonException("Unexpected IO exception " + e.getMessage(), e);
+            }
+        }
+
+    }
+
+    private void checkClosed() {
+        if (closed) {
+            throw new IllegalStateException("read(), readObject(), readArray() or close() method was already called");
+        }
+
+    }
+}
@@ -24,12 +24,31 @@ import java.math.BigInteger;
 import javax.json.JsonNumber;
 
 final class JsonLongImpl implements JsonNumber {
+    //shared instances of the small values which are the most frequent ones (flags, counts, small ids)
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final JsonLongImpl[] CACHE = new JsonLongImpl[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new JsonLongImpl(i + CACHE_LOW);
+        }
+    }
+
     private final long value;
 
     JsonLongImpl(final long value) {
         this.value = value;
     }
 
+    //like Long.valueOf(), the instance is immutable so it can be shared
+    static JsonLongImpl valueOf(final long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return CACHE[(int) value - CACHE_LOW];
+        }
+        return new JsonLongImpl(value);
+    }
+
     @Override
     public boolean isIntegral() {
         return true;
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import javax.json.JsonValue;
+
+//an array of numbers only, backed by a long[] of either plain longs or decimals packed as unscaled value and scale
+//(see AbstractJsonStreamParser.scanDecimal()), the JsonNumbers are created on access
+final class JsonNumberArrayImpl extends JsonArrayImpl implements JohnzonJsonNumberArray {
+    private final Numbers numbers;
+
+    JsonNumberArrayImpl(final long[] values, final boolean decimals) {
+        this(new Numbers(values, decimals));
+    }
+
+    private JsonNumberArrayImpl(final Numbers numbers) {
+        super(numbers);
+        this.numbers = numbers;
+    }
+
+    @Override
+    public long[] toLongArray() {
+        final long[] values = numbers.values;
+        final long[] longs = new long[values.length];
+        if (!numbers.decimals) {
+            System.arraycopy(values, 0, longs, 0, values.length);
+            return longs;
+        }
+        for (int i = 0; i < values.length; i++) {
+            final long unscaled = AbstractJsonStreamParser.unscaledOf(values[i]);
+            final int scale = AbstractJsonStreamParser.scaleOf(values[i]);
+            if (scale == 0) {
+                longs[i] = unscaled;
+            } else if (scale > 0) {
+                long divisor = 1; //the unscaled value has at most 16 digits, so longer divisors give 0 anyway
+                for (int s = Math.min(scale, 17); s > 0; s--) {
+                    divisor *= 10;
+                }
+                longs[i] = unscaled / divisor;
+            } else {
+                longs[i] = BigDecimal.valueOf(unscaled, scale).longValue();
+            }
+        }
+        return longs;
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        final long[] values = numbers.values;
+        final double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = numbers.decimals ? AbstractJsonStreamParser.decimalAsDouble(values[i]) : values[i];
+        }
+        return doubles;
+    }
+
+    private static final class Numbers extends AbstractList<JsonValue> implements RandomAccess, Serializable {
+        private final long[] values;
+        private final boolean decimals;
+
+        private Numbers(final long[] values, final boolean decimals) {
+            this.values = values;
+            this.decimals = decimals;
+        }
+
+        @Override
+        public JsonValue get(final int index) {
+            final long value = values[index];
+            if (!decimals) {
+                return JsonLongImpl.valueOf(value);
+            }
+            final int scale = AbstractJsonStreamParser.scaleOf(value);
+            if (scale == 0) {
+                return JsonLongImpl.valueOf(AbstractJsonStreamParser.unscaledOf(value));
+            }
+            return new JsonDecimalImpl(AbstractJsonStreamParser.decimalAsDouble(value), AbstractJsonStreamParser.unscaledOf(value), scale);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
@@ -31,6 +31,13 @@ import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
 
 class JsonObjectBuilderImpl implements JsonObjectBuilder, Serializable {
+    //objects with up to this many members are built as CompactObjectMap, larger ones as LinkedHashMap
+    static final int COMPACT_OBJECT_LIMIT = 12;
+
+    //members are collected in the arrays until the limit is exceeded, then in tmpMap
+    private String[] tmpKeys;
+    private JsonValue[] tmpValues;
+    private int tmpSize;
     private Map<String, JsonValue> tmpMap;
 
     @Override
@@ -59,13 +66,13 @@ class JsonObjectBuilderImpl implements JsonObjectBuilder, Serializable {
 
     @Override
     public JsonObjectBuilder add(final String name, final int value) {
-        putValue(name, new JsonLongImpl(value));
+        putValue(name, JsonLongImpl.valueOf(value));
         return this;
     }
 
     @Override
     public JsonObjectBuilder add(final String name, final long value) {
-        putValue(name, new JsonLongImpl(value));
+        putValue(name, JsonLongImpl.valueOf(value));
         return this;
     }
 
@@ -104,11 +111,35 @@ class JsonObjectBuilderImpl implements JsonObjectBuilder, Serializable {
             throw npe();
         }
         
-        if(tmpMap==null){
-            tmpMap=new LinkedHashMap<String, JsonValue>();
+        if (tmpMap != null) {
+            tmpMap.put(name, value);
+            return;
+        }
+
+        if (tmpKeys == null) {
+            tmpKeys = new String[COMPACT_OBJECT_LIMIT];
+            tmpValues = new JsonValue[COMPACT_OBJECT_LIMIT];
+        }
+        for (int i = 0; i < tmpSize; i++) {
+            if (tmpKeys[i].equals(name)) { //same as Map.put(), the member keeps its position
+                tmpValues[i] = value;
+                return;
+            }
+        }
+        if (tmpSize < COMPACT_OBJECT_LIMIT) {
+            tmpKeys[tmpSize] = name;
+            tmpValues[tmpSize++] = value;
+            return;
+        }
+
+        tmpMap = new LinkedHashMap<String, JsonValue>();
+        for (int i = 0; i < tmpSize; i++) {
+            tmpMap.put(tmpKeys[i], tmpValues[i]);
         }
-        
         tmpMap.put(name, value);
+        tmpKeys = null;
+        tmpValues = null;
+        tmpSize = 0;
     }
     
     private static NullPointerException npe() {
@@ -118,7 +149,16 @@ class JsonObjectBuilderImpl implements JsonObjectBuilder, Serializable {
     @Override
     public JsonObject build() {
         
-        if(tmpMap==null) {
+        if (tmpSize > 0) {
+            final String[] keys = new String[tmpSize];
+            final JsonValue[] values = new JsonValue[tmpSize];
+            System.arraycopy(tmpKeys, 0, keys, 0, tmpSize);
+            System.arraycopy(tmpValues, 0, values, 0, tmpSize);
+            tmpKeys = null;
+            tmpValues = null;
+            tmpSize = 0;
+            return new JsonObjectImpl(new CompactObjectMap(keys, values));
+        } else if(tmpMap==null) {
             return new JsonObjectImpl(Collections.EMPTY_MAP);
         } else {
             Map<String, JsonValue> dump = (Collections.unmodifiableMap(tmpMap));
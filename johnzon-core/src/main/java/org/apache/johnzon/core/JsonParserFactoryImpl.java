@@ -20,35 +20,62 @@ package org.apache.johnzon.core;
 
 import static java.util.Arrays.asList;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 
 import javax.json.JsonArray;
+import javax.json.JsonException;
 import javax.json.JsonObject;
 import javax.json.stream.JsonParser;
-import javax.json.stream.JsonParserFactory;
 
-class JsonParserFactoryImpl extends AbstractJsonFactory implements JsonParserFactory {
+class JsonParserFactoryImpl extends AbstractJsonFactory implements JohnzonJsonParserFactory {
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
     public static final String MAX_STRING_LENGTH = "org.apache.johnzon.max-string-length";
     public static final int DEFAULT_MAX_STRING_LENGTH = Integer.getInteger(MAX_STRING_LENGTH, 10 * 1024 * 1024); //10m
     
     public static final String BUFFER_LENGTH = "org.apache.johnzon.default-char-buffer";
     public static final int DEFAULT_BUFFER_LENGTH = Integer.getInteger(BUFFER_LENGTH, 64 * 1024); //64k
     
+    public static final String VALUE_BUFFER_LENGTH = "org.apache.johnzon.default-value-buffer";
+    public static final int DEFAULT_VALUE_BUFFER_LENGTH = Integer.getInteger(VALUE_BUFFER_LENGTH, 1024); //1k, grows up to max-string-length
+
+    public static final String SYMBOL_TABLE_SIZE = "org.apache.johnzon.symbol-table-size";
+    public static final int DEFAULT_SYMBOL_TABLE_SIZE = Integer.getInteger(SYMBOL_TABLE_SIZE, 0); //disabled by default
+
+    public static final String MAPPED_WINDOW_LENGTH = "org.apache.johnzon.mapped-window-length";
+    public static final int DEFAULT_MAPPED_WINDOW_LENGTH = Integer.getInteger(MAPPED_WINDOW_LENGTH, 64 * 1024 * 1024); //64m
+
     public static final String SUPPORTS_COMMENTS = "org.apache.johnzon.supports-comments";
     public static final boolean DEFAULT_SUPPORTS_COMMENT = Boolean.getBoolean(SUPPORTS_COMMENTS); //default is false;
 
     static final Collection<String> SUPPORTED_CONFIG_KEYS = asList(
-        BUFFER_STRATEGY, MAX_STRING_LENGTH, BUFFER_LENGTH, SUPPORTS_COMMENTS
+        BUFFER_STRATEGY, BUFFER_STATS_JMX, MAX_STRING_LENGTH, BUFFER_LENGTH, VALUE_BUFFER_LENGTH, SYMBOL_TABLE_SIZE, MAPPED_WINDOW_LENGTH, SUPPORTS_COMMENTS
     );
       
     private final int maxSize;
     private final BufferStrategy.BufferProvider<char[]> bufferProvider;
     private final BufferStrategy.BufferProvider<char[]> valueBufferProvider;
+    private final BufferStrategy.BufferProvider<byte[]> byteBufferProvider;
+    //only with BufferStrategy.DIRECT, used instead of byteBufferProvider to read channels
+    private final BufferStrategy.BufferProvider<ByteBuffer> directBufferProvider;
+    private final SymbolTable symbolTable;
+    private final int mappedWindowLength;
     private final boolean supportsComments;
 
     JsonParserFactoryImpl(final Map<String, ?> config) {
@@ -59,34 +86,139 @@ class JsonParserFactoryImpl extends AbstractJsonFactory implements JsonParserFac
             throw new IllegalArgumentException("buffer length must be greater than zero");
         }
 
+        final int valueBufferSize = getInt(VALUE_BUFFER_LENGTH, DEFAULT_VALUE_BUFFER_LENGTH);
+        if (valueBufferSize <= 0) {
+            throw new IllegalArgumentException("value buffer length must be greater than zero");
+        }
+
         this.maxSize = getInt(MAX_STRING_LENGTH, DEFAULT_MAX_STRING_LENGTH);
-        this.bufferProvider = getBufferProvider().newCharProvider(bufferSize);
-        this.valueBufferProvider = getBufferProvider().newCharProvider(maxSize);
+        this.bufferProvider = instrument("char", getBufferProvider().newCharProvider(bufferSize));
+        //the value buffer starts small and the parser grows it on demand up to maxSize
+        this.valueBufferProvider = instrument("value",
+                getBufferProvider().newCharProvider(maxSize > 0 ? Math.min(valueBufferSize, maxSize) : valueBufferSize));
+        //an utf-8 sequence (up to 4 bytes) must always fit into the byte buffer
+        this.byteBufferProvider = instrument("byte", getBufferProvider().newByteProvider(Math.max(bufferSize, 4)));
+        this.directBufferProvider = getBufferProvider() == BufferStrategy.DIRECT
+                ? instrument("direct", new DirectByteBufferProvider(Math.max(bufferSize, 4))) : null;
         this.supportsComments = getBool(SUPPORTS_COMMENTS, DEFAULT_SUPPORTS_COMMENT);
+
+        //key names are shared by all parsers (and so by all JsonObjects read) of this factory
+        final int symbolTableSize = getInt(SYMBOL_TABLE_SIZE, DEFAULT_SYMBOL_TABLE_SIZE);
+        this.symbolTable = symbolTableSize > 0 ? new SymbolTable(symbolTableSize) : null;
+
+        //an utf-8 sequence (up to 4 bytes) must always fit into a window
+        this.mappedWindowLength = Math.max(getInt(MAPPED_WINDOW_LENGTH, DEFAULT_MAPPED_WINDOW_LENGTH), 4);
     }
 
     private JsonParser getDefaultJsonParserImpl(final InputStream in) {
         if (supportsComments) {
-            return new CommentsJsonStreamParserImpl(in, maxSize, bufferProvider, valueBufferProvider);
+            return new CommentsJsonStreamParserImpl(in, null, null, maxSize, symbolTable, bufferProvider, valueBufferProvider);
+        }
+        //UTF Auto detection RFC 4627, UTF-8 is tokenized directly on the bytes
+        final PushbackInputStream pushbackInputStream = new PushbackInputStream(in, 4);
+        final Charset charset = RFC4627AwareInputStreamReader.getCharset(pushbackInputStream);
+        if (UTF8_CHARSET.equals(charset)) {
+            return new JsonUtf8StreamParserImpl(pushbackInputStream, maxSize, symbolTable, byteBufferProvider, valueBufferProvider);
         }
-        //UTF Auto detection RFC 4627
-        return new JsonStreamParserImpl(in, maxSize, bufferProvider, valueBufferProvider);
+        return new JsonStreamParserImpl(pushbackInputStream, null, charset, maxSize, symbolTable, bufferProvider, valueBufferProvider);
     }
 
     private JsonParser getDefaultJsonParserImpl(final InputStream in, final Charset charset) {
         if (supportsComments) {
-            return new CommentsJsonStreamParserImpl(in, charset, maxSize, bufferProvider, valueBufferProvider);
+            return new CommentsJsonStreamParserImpl(in, null, charset, maxSize, symbolTable, bufferProvider, valueBufferProvider);
         }
         //use provided charset
-        return new JsonStreamParserImpl(in, charset, maxSize, bufferProvider, valueBufferProvider);
+        if (UTF8_CHARSET.equals(charset)) {
+            return new JsonUtf8StreamParserImpl(in, maxSize, symbolTable, byteBufferProvider, valueBufferProvider);
+        }
+        return new JsonStreamParserImpl(in, null, charset, maxSize, symbolTable, bufferProvider, valueBufferProvider);
+    }
+
+    private JsonParser getDefaultJsonParserImpl(final FileChannel channel) throws IOException {
+        //UTF Auto detection RFC 4627 on the first bytes, only UTF-8 is tokenized on the mapped file
+        final long start = channel.position();
+        final ByteBuffer head = ByteBuffer.allocate((int) Math.max(0, Math.min(4, channel.size() - start)));
+        while (head.hasRemaining() && channel.read(head, start + head.position()) > 0) {
+            // read up to 4 bytes
+        }
+        final PushbackInputStream pushbackInputStream = new PushbackInputStream(new ByteArrayInputStream(head.array(), 0, head.position()), 4);
+        final Charset charset = RFC4627AwareInputStreamReader.getCharset(pushbackInputStream);
+
+        if (supportsComments || !UTF8_CHARSET.equals(charset)) {
+            return getDefaultJsonParserImpl(Channels.newInputStream(channel));
+        }
+
+        final int bomLength = bomLength(pushbackInputStream, head.position());
+        return new JsonByteBufferParserImpl(new JsonByteBufferParserImpl.MappedFileSource(channel, start + bomLength, mappedWindowLength),
+                maxSize, symbolTable, valueBufferProvider);
+    }
+
+    private JsonParser getDefaultJsonParserImpl(final ByteBuffer in) {
+        //own indexes so the position of the caller is not changed
+        final ByteBuffer buffer = in.slice();
+
+        //UTF Auto detection RFC 4627 on the first bytes, only UTF-8 is tokenized in place
+        final byte[] head = new byte[Math.min(4, buffer.limit())];
+        for (int i = 0; i < head.length; i++) {
+            head[i] = buffer.get(i);
+        }
+        final PushbackInputStream pushbackInputStream = new PushbackInputStream(new ByteArrayInputStream(head), 4);
+        final Charset charset = RFC4627AwareInputStreamReader.getCharset(pushbackInputStream);
+
+        if (supportsComments || !UTF8_CHARSET.equals(charset)) {
+            if (buffer.hasArray()) {
+                return getDefaultJsonParserImpl(new ByteArrayInputStream(buffer.array(), buffer.arrayOffset(), buffer.limit()));
+            }
+            final byte[] bytes = new byte[buffer.limit()];
+            buffer.get(bytes);
+            return getDefaultJsonParserImpl(new ByteArrayInputStream(bytes));
+        }
+
+        buffer.position(bomLength(pushbackInputStream, head.length));
+        return new JsonByteBufferParserImpl(new JsonByteBufferParserImpl.SingleBufferSource(buffer.slice()),
+                maxSize, symbolTable, valueBufferProvider);
+    }
+
+    private JsonParser getDefaultJsonParserImpl(final ReadableByteChannel channel) throws IOException {
+        if (supportsComments) {
+            return getDefaultJsonParserImpl(Channels.newInputStream(channel));
+        }
+
+        //UTF Auto detection RFC 4627 on the first bytes, only UTF-8 is tokenized on the bytes
+        final byte[] headBytes = new byte[4];
+        final ByteBuffer head = ByteBuffer.wrap(headBytes);
+        while (head.hasRemaining() && channel.read(head) >= 0) {
+            // read up to 4 bytes
+        }
+        final int headLength = head.position();
+        final PushbackInputStream pushbackInputStream = new PushbackInputStream(new ByteArrayInputStream(headBytes, 0, headLength), 4);
+        final Charset charset = RFC4627AwareInputStreamReader.getCharset(pushbackInputStream);
+
+        if (!UTF8_CHARSET.equals(charset)) {
+            return getDefaultJsonParserImpl(new SequenceInputStream(new ByteArrayInputStream(headBytes, 0, headLength),
+                    Channels.newInputStream(channel)));
+        }
+
+        //the bytes read after the BOM are the start of the first window
+        final int bomLength = bomLength(pushbackInputStream, headLength);
+        if (directBufferProvider != null) {
+            final ByteBuffer buffer = directBufferProvider.newBuffer();
+            buffer.put(headBytes, bomLength, headLength - bomLength);
+            return new JsonByteBufferParserImpl(new JsonByteBufferParserImpl.ChannelSource<ByteBuffer>(channel, directBufferProvider,
+                    buffer, buffer, headLength - bomLength), maxSize, symbolTable, valueBufferProvider);
+        }
+        final byte[] bytes = byteBufferProvider.newBuffer();
+        System.arraycopy(headBytes, bomLength, bytes, 0, headLength - bomLength);
+        return new JsonByteBufferParserImpl(new JsonByteBufferParserImpl.ChannelSource<byte[]>(channel, byteBufferProvider,
+                bytes, ByteBuffer.wrap(bytes), headLength - bomLength), maxSize, symbolTable, valueBufferProvider);
     }
 
     private JsonParser getDefaultJsonParserImpl(final Reader in) {
         if (supportsComments) {
-            return new CommentsJsonStreamParserImpl(in, maxSize, bufferProvider, valueBufferProvider);
+            return new CommentsJsonStreamParserImpl(null, in, null, maxSize, symbolTable, bufferProvider, valueBufferProvider);
         }
         //no charset necessary
-        return new JsonStreamParserImpl(in, maxSize, bufferProvider, valueBufferProvider);
+        return new JsonStreamParserImpl(null, in, null, maxSize, symbolTable, bufferProvider, valueBufferProvider);
     }
 
     @Override
@@ -104,6 +236,80 @@ class JsonParserFactoryImpl extends AbstractJsonFactory implements JsonParserFac
         return getDefaultJsonParserImpl(in, charset);
     }
 
+    @Override
+    public JsonParser createParser(final File file) {
+        final FileChannel channel;
+        try {
+            channel = new FileInputStream(file).getChannel();
+        } catch (final IOException e) {
+            throw new JsonException("Can't open " + file, e);
+        }
+        return createParser(channel);
+    }
+
+    @Override
+    public JsonParser createParser(final FileChannel channel) {
+        try {
+            return getDefaultJsonParserImpl(channel);
+        } catch (final IOException e) {
+            closeQuietly(channel);
+            throw new JsonException("Can't map " + channel, e);
+        } catch (final JsonException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    //count of bytes skipped by RFC4627AwareInputStreamReader.getCharset() on a stream of the first headLength bytes
+    private static int bomLength(final PushbackInputStream pushbackInputStream, final int headLength) {
+        try {
+            return headLength - pushbackInputStream.available();
+        } catch (final IOException e) { // can't happen, it is backed by a ByteArrayInputStream
+            throw new JsonException(e.getMessage(), e);
+        }
+    }
+
+    private static void closeQuietly(final ReadableByteChannel channel) {
+        try {
+            channel.close();
+        } catch (final IOException ignored) {
+            // no-op
+        }
+    }
+
+    @Override
+    public JsonParser createParser(final ByteBuffer buffer) {
+        return getDefaultJsonParserImpl(buffer);
+    }
+
+    @Override
+    public JsonParser createParser(final ReadableByteChannel channel) {
+        //a non blocking channel would make the parser spin on reads returning no byte
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("Non blocking channels are not supported, use createAsyncParser() for them");
+        }
+        if (channel instanceof FileChannel) {
+            return createParser((FileChannel) channel);
+        }
+        try {
+            return getDefaultJsonParserImpl(channel);
+        } catch (final IOException e) {
+            closeQuietly(channel);
+            throw new JsonException("Can't read " + channel, e);
+        } catch (final JsonException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    @Override
+    public JohnzonJsonAsyncParser createAsyncParser() {
+        if (supportsComments) {
+            throw new UnsupportedOperationException("Comments are not supported by the async parser");
+        }
+        return new JsonAsyncParserImpl(maxSize, symbolTable, byteBufferProvider, valueBufferProvider);
+    }
+
     @Override
     public JsonParser createParser(final JsonObject obj) {
         // no need of a comment version since JsonObject has no comment event
@@ -132,4 +338,12 @@ class JsonParserFactoryImpl extends AbstractJsonFactory implements JsonParserFac
     public JsonParser createInternalParser(final Reader reader) {
         return getDefaultJsonParserImpl(reader);
     }
+
+    //a parser on chars already in memory, values are located by their position in chars, see JsonTape
+    JsonStreamParserImpl createInternalParser(final char[] chars, final int length) {
+        if (supportsComments) {
+            return new CommentsJsonStreamParserImpl(chars, length, maxSize, symbolTable, valueBufferProvider);
+        }
+        return new JsonStreamParserImpl(chars, length, maxSize, symbolTable, valueBufferProvider);
+    }
 }
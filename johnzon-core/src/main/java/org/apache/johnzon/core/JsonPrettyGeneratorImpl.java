@@ -19,35 +19,35 @@
 package org.apache.johnzon.core;
 
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
-import java.util.concurrent.ConcurrentMap;
 
 import javax.json.JsonValue;
 import javax.json.stream.JsonGenerator;
 
 final class JsonPrettyGeneratorImpl extends JsonGeneratorImpl {
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
     private static final String DEFAULT_INDENTATION = "  ";
     private final String indent;
 
     public JsonPrettyGeneratorImpl(final Writer writer, final BufferStrategy.BufferProvider<char[]> bufferProvider,
-            final ConcurrentMap<String, String> cache) {
-        super(writer, bufferProvider, cache);
+            final KeyCache keyCache, final JsonParserFactoryImpl rawParserFactory) {
+        super(writer, bufferProvider, keyCache, null, rawParserFactory);
         indent = DEFAULT_INDENTATION;
     }
 
     public JsonPrettyGeneratorImpl(final OutputStream out, final Charset encoding,
-            final BufferStrategy.BufferProvider<char[]> bufferProvider, final ConcurrentMap<String, String> cache) {
-        super(out, encoding, bufferProvider, cache);
-        indent = DEFAULT_INDENTATION;
+            final BufferStrategy.BufferProvider<char[]> bufferProvider, final KeyCache keyCache,
+            final JsonParserFactoryImpl rawParserFactory) {
+        this(new OutputStreamWriter(out, encoding), bufferProvider, keyCache, rawParserFactory);
     }
 
     public JsonPrettyGeneratorImpl(final OutputStream out, final BufferStrategy.BufferProvider<char[]> bufferProvider,
-            final ConcurrentMap<String, String> cache) {
-        super(out, bufferProvider, cache);
-        indent = DEFAULT_INDENTATION;
+            final KeyCache keyCache, final JsonParserFactoryImpl rawParserFactory) {
+        this(out, UTF8_CHARSET, bufferProvider, keyCache, rawParserFactory);
     }
 
     private void writeEOL() {
@@ -302,4 +302,58 @@ final class JsonPrettyGeneratorImpl extends JsonGeneratorImpl {
         return super.writeNull();
     }
 
+    @Override
+    public JsonGenerator writeRaw(final CharSequence json) {
+        if (!needComma) {
+            writeEOL();
+            writeIndent(0);
+        }
+        return super.writeRaw(json);
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final char[] json, final int offset, final int length) {
+        if (!needComma) {
+            writeEOL();
+            writeIndent(0);
+        }
+        return super.writeRaw(json, offset, length);
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final byte[] json, final int offset, final int length) {
+        if (!needComma) {
+            writeEOL();
+            writeIndent(0);
+        }
+        return super.writeRaw(json, offset, length);
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final String name, final CharSequence json) {
+        if (!needComma) {
+            writeEOL();
+            writeIndent(0);
+        }
+        return super.writeRaw(name, json);
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final String name, final char[] json, final int offset, final int length) {
+        if (!needComma) {
+            writeEOL();
+            writeIndent(0);
+        }
+        return super.writeRaw(name, json, offset, length);
+    }
+
+    @Override
+    public JsonGenerator writeRaw(final String name, final byte[] json, final int offset, final int length) {
+        if (!needComma) {
+            writeEOL();
+            writeIndent(0);
+        }
+        return super.writeRaw(name, json, offset, length);
+    }
+
 }
@@ -21,39 +21,66 @@ package org.apache.johnzon.core;
 import static java.util.Arrays.asList;
 
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.json.JsonReader;
 import javax.json.JsonReaderFactory;
 
 class JsonReaderFactoryImpl extends AbstractJsonFactory implements JsonReaderFactory {
-    static final Collection<String> SUPPORTED_CONFIG_KEYS = asList(
+    //keep the read document as chars plus an index and create the values on access, see JsonTape
+    public static final String INDEXED_READER = "org.apache.johnzon.indexed-reader";
+    public static final boolean DEFAULT_INDEXED_READER = Boolean.getBoolean(INDEXED_READER); //default is false
+
+    //short string values are shared by all documents read by this factory, see JsonStringTable
+    public static final String STRING_TABLE_SIZE = "org.apache.johnzon.string-table-size";
+    public static final int DEFAULT_STRING_TABLE_SIZE = Integer.getInteger(STRING_TABLE_SIZE, 0); //disabled by default
 
+    static final Collection<String> SUPPORTED_CONFIG_KEYS = asList(
+        INDEXED_READER, STRING_TABLE_SIZE
     );
     private final JsonParserFactoryImpl parserFactory;
+    private final boolean indexed;
+    private final JsonStringTable stringTable;
 
     JsonReaderFactoryImpl(final Map<String, ?> config) {
         super(config, SUPPORTED_CONFIG_KEYS, JsonParserFactoryImpl.SUPPORTED_CONFIG_KEYS);
-        this.parserFactory = new JsonParserFactoryImpl(internalConfig);
+        this.indexed = getBool(INDEXED_READER, DEFAULT_INDEXED_READER);
+        final int stringTableSize = getInt(STRING_TABLE_SIZE, DEFAULT_STRING_TABLE_SIZE);
+        this.stringTable = stringTableSize > 0 ? new JsonStringTable(stringTableSize) : null;
+
+        final Map<String, Object> parserConfig = new HashMap<String, Object>(internalConfig);
+        parserConfig.keySet().removeAll(SUPPORTED_CONFIG_KEYS);
+        this.parserFactory = new JsonParserFactoryImpl(parserConfig);
     }
 
     @Override
     public JsonReader createReader(final Reader reader) {
-        return new JsonReaderImpl(parserFactory.createInternalParser(reader));
+        if (indexed) {
+            return new JsonIndexedReaderImpl(reader, parserFactory, stringTable);
+        }
+        return new JsonReaderImpl(parserFactory.createInternalParser(reader), stringTable);
     }
 
     @Override
     public JsonReader createReader(final InputStream in) {
-        return new JsonReaderImpl(parserFactory.createInternalParser(in));
+        if (indexed) {
+            return new JsonIndexedReaderImpl(new RFC4627AwareInputStreamReader(in), parserFactory, stringTable);
+        }
+        return new JsonReaderImpl(parserFactory.createInternalParser(in), stringTable);
     }
 
     @Override
     public JsonReader createReader(final InputStream in, final Charset charset) {
-        return new JsonReaderImpl(parserFactory.createInternalParser(in, charset));
+        if (indexed) {
+            return new JsonIndexedReaderImpl(new InputStreamReader(in, charset.newDecoder()), parserFactory, stringTable);
+        }
+        return new JsonReaderImpl(parserFactory.createInternalParser(in, charset), stringTable);
     }
 
     @Override
@@ -19,20 +19,28 @@
 package org.apache.johnzon.core;
 
 import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
+import javax.json.JsonString;
 import javax.json.JsonStructure;
+import javax.json.JsonValue;
 import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParsingException;
 
 class JsonReaderImpl implements JsonReader {
     private final JsonParser parser;
+    //set if the parser is one of ours, decimals are then read without BigDecimal where possible
+    private final AbstractJsonStreamParser streamParser;
+    //canonical instances of short string values, null if disabled
+    private final JsonStringTable stringTable;
     private boolean closed = false;
 
-    JsonReaderImpl(final JsonParser parser) {
+    JsonReaderImpl(final JsonParser parser, final JsonStringTable stringTable) {
         this.parser = parser;
+        this.streamParser = parser instanceof AbstractJsonStreamParser ? AbstractJsonStreamParser.class.cast(parser) : null;
+        this.stringTable = streamParser != null ? stringTable : null;
     }
 
     @Override
@@ -53,13 +61,12 @@ class JsonReaderImpl implements JsonReader {
                 close();
                 return objectBuilder.build();
             case START_ARRAY:
-                final JsonArrayBuilder arrayBuilder = new JsonArrayBuilderImpl();
-                parseArray(arrayBuilder);
+                final JsonArray array = parseArray();
                 if (parser.hasNext()) {
                     throw new JsonParsingException("Expected end of file", parser.getLocation());
                 }
                 close();
-                return arrayBuilder.build();
+                return array;
             default:
                 close();
                 throw new JsonParsingException("Unknown structure: " + parser.next(), parser.getLocation());
@@ -97,7 +104,7 @@ class JsonReaderImpl implements JsonReader {
                     break;
 
                 case VALUE_STRING:
-                    builder.add(key, new JsonStringImpl(parser.getString()));
+                    builder.add(key, string());
                     break;
 
                 case START_OBJECT:
@@ -107,17 +114,11 @@ class JsonReaderImpl implements JsonReader {
                     break;
 
                 case START_ARRAY:
-                    JsonArrayBuilder subArray = null;
-                    parseArray(subArray = new JsonArrayBuilderImpl());
-                    builder.add(key, subArray);
+                    builder.add(key, parseArray());
                     break;
 
                 case VALUE_NUMBER:
-                    if (parser.isIntegralNumber()) {
-                        builder.add(key, new JsonLongImpl(parser.getLong()));
-                    } else {
-                        builder.add(key, new JsonNumberImpl(parser.getBigDecimal()));
-                    }
+                    builder.add(key, number());
                     break;
 
                 case VALUE_NULL:
@@ -144,20 +145,78 @@ class JsonReaderImpl implements JsonReader {
         }
     }
 
-    private void parseArray(final JsonArrayBuilder builder) {
-        while (parser.hasNext()) {
-            final JsonParser.Event next = parser.next();
+    private JsonArray parseArray() {
+        JsonParser.Event next = parser.hasNext() ? parser.next() : null;
+
+        //arrays of numbers only are kept as long[], either as longs or as packed decimals
+        long[] numbers = null;
+        int count = 0;
+        boolean decimals = false;
+        if (streamParser != null) {
+            while (next == JsonParser.Event.VALUE_NUMBER) {
+                long number;
+                if (!decimals && streamParser.isLongNumber()) {
+                    number = parser.getLong();
+                } else {
+                    number = streamParser.getPackedDecimal();
+                    if (number == AbstractJsonStreamParser.INEXACT_DECIMAL || (!decimals && !packDecimals(numbers, count))) {
+                        break;
+                    }
+                    decimals = true;
+                }
+
+                if (numbers == null) {
+                    numbers = new long[16];
+                } else if (count == numbers.length) {
+                    final long[] newNumbers = new long[count << 1];
+                    System.arraycopy(numbers, 0, newNumbers, 0, count);
+                    numbers = newNumbers;
+                }
+                numbers[count++] = number;
+                next = parser.hasNext() ? parser.next() : null;
+            }
+
+            if (count > 0) {
+                final long[] values = new long[count];
+                System.arraycopy(numbers, 0, values, 0, count);
+                final JsonArray numberArray = new JsonNumberArrayImpl(values, decimals);
+                if (next == JsonParser.Event.END_ARRAY) {
+                    return numberArray;
+                }
+                //not only numbers, go on with the generic array
+                final JsonArrayBuilderImpl builder = new JsonArrayBuilderImpl();
+                for (final JsonValue value : numberArray) {
+                    builder.add(value);
+                }
+                return parseArray(builder, next);
+            }
+        }
+        return parseArray(new JsonArrayBuilderImpl(), next);
+    }
+
+    //longs can be packed as decimals as long as they are in [-2^53, 2^53]
+    private static boolean packDecimals(final long[] numbers, final int count) {
+        for (int i = 0; i < count; i++) {
+            if (numbers[i] > (1L << 53) || numbers[i] < -(1L << 53)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            numbers[i] = AbstractJsonStreamParser.packDecimal(numbers[i]);
+        }
+        return true;
+    }
+
+    private JsonArray parseArray(final JsonArrayBuilderImpl builder, final JsonParser.Event first) {
+        JsonParser.Event next = first;
+        while (next != null) {
             switch (next) {
                 case VALUE_STRING:
-                    builder.add(new JsonStringImpl(parser.getString()));
+                    builder.add(string());
                     break;
 
                 case VALUE_NUMBER:
-                    if (parser.isIntegralNumber()) {
-                        builder.add(new JsonLongImpl(parser.getLong()));
-                    } else {
-                        builder.add(new JsonNumberImpl(parser.getBigDecimal()));
-                    }
+                    builder.add(number());
                     break;
 
                 case START_OBJECT:
@@ -167,13 +226,11 @@ class JsonReaderImpl implements JsonReader {
                     break;
 
                 case START_ARRAY:
-                    JsonArrayBuilder subArray = null;
-                    parseArray(subArray = new JsonArrayBuilderImpl());
-                    builder.add(subArray);
+                    builder.add(parseArray());
                     break;
 
                 case END_ARRAY:
-                    return;
+                    return builder.build();
 
                 case VALUE_NULL:
                     builder.addNull();
@@ -196,6 +253,25 @@ class JsonReaderImpl implements JsonReader {
                 default:
                     throw new JsonParsingException(next.name() + ", shouldn't occur", parser.getLocation());
             }
+            next = parser.hasNext() ? parser.next() : null;
+        }
+        return builder.build();
+    }
+
+    private JsonString string() {
+        if (stringTable != null) {
+            return streamParser.getJsonString(stringTable);
+        }
+        return new JsonStringImpl(parser.getString());
+    }
+
+    private JsonNumber number() {
+        if (parser.isIntegralNumber()) {
+            return JsonLongImpl.valueOf(parser.getLong());
+        } else if (streamParser != null) {
+            return streamParser.getDecimalNumber();
+        } else {
+            return new JsonNumberImpl(parser.getBigDecimal());
         }
     }
 
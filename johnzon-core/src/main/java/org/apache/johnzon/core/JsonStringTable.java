@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+
+//Bounded table of canonical JsonString instances for short string values, shared by all readers of a factory.
+//Documents repeating the same values then share one JsonString (and its cached escaped form) per value.
+//JsonStringImpl only has a final value and racy but idempotent caches, so it can be a DirectMappedCache entry.
+final class JsonStringTable implements Serializable {
+    //longer values rarely repeat and would retain too much memory
+    static final int MAX_VALUE_LENGTH = 32;
+
+    private final DirectMappedCache<JsonStringImpl> values;
+
+    JsonStringTable(final int size) {
+        this.values = new DirectMappedCache<JsonStringImpl>(size);
+    }
+
+    JsonStringImpl get(final char[] chars, final int start, final int end) {
+        final int length = end - start;
+        if (length > MAX_VALUE_LENGTH) {
+            return new JsonStringImpl(new String(chars, start, length));
+        }
+
+        final int slot = values.slot(DirectMappedCache.hash(chars, start, end));
+        final JsonStringImpl value = values.get(slot);
+        if (value != null && DirectMappedCache.equals(value.getString(), chars, start, end)) {
+            return value;
+        }
+
+        final JsonStringImpl newValue = new JsonStringImpl(new String(chars, start, length));
+        values.set(slot, newValue);
+        return newValue;
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+//A read document kept as the chars it was parsed from plus a compact index of all its values (the tape).
+//The JsonObject and JsonArray views on it create their members only when they are accessed,
+//so reading a few values of a large document does not allocate the whole tree.
+//The chars are retained as long as any value of the document is referenced.
+final class JsonTape implements Serializable {
+
+    //kinds of nodes
+    private static final int OBJECT = 0;
+    private static final int ARRAY = 1;
+    private static final int STRING = 2;
+    private static final int ESCAPED_STRING = 3;
+    private static final int INTEGRAL = 4;
+    private static final int DECIMAL = 5;
+    private static final int TRUE = 6;
+    private static final int FALSE = 7;
+    private static final int NULL = 8;
+
+    //every node takes three ints: kind, start and end of the value in chars
+    //for objects and arrays start is the number of values and end is the index of the node after the structure,
+    //the members of an object are key and value node pairs
+    //for escaped strings start is the index of the unescaped value in strings
+    private static final int NODE = 3;
+
+    //objects with more members get a hash index of the keys on the first access
+    private static final int LINEAR_LOOKUP_LIMIT = 8;
+
+    private final char[] chars;
+    private final int[] nodes;
+    private final String[] strings;
+    private final JsonStringTable stringTable; //null if disabled
+
+    private JsonTape(final char[] chars, final int[] nodes, final String[] strings, final JsonStringTable stringTable) {
+        this.chars = chars;
+        this.nodes = nodes;
+        this.strings = strings;
+        this.stringTable = stringTable;
+    }
+
+    //index the document, the parser must read from chars and be positioned on the START_OBJECT or START_ARRAY of the root
+    static JsonStructure read(final AbstractJsonStreamParser parser, final char[] chars, final Event root,
+            final JsonStringTable stringTable) {
+        int[] nodes = new int[NODE * 64];
+        int size = 0;
+        int[] open = new int[16];
+        int depth = 0;
+        final List<String> strings = new ArrayList<String>();
+
+        Event event = root;
+        while (true) {
+            if (size + NODE > nodes.length) {
+                final int[] newNodes = new int[nodes.length << 1];
+                System.arraycopy(nodes, 0, newNodes, 0, size);
+                nodes = newNodes;
+            }
+            if (depth > 0 && event != Event.KEY_NAME && event != Event.END_OBJECT && event != Event.END_ARRAY) {
+                nodes[open[depth - 1] + 1]++; //one more value in the enclosing structure
+            }
+
+            switch (event) {
+                case START_OBJECT:
+                case START_ARRAY:
+                    if (depth == open.length) {
+                        final int[] newOpen = new int[open.length << 1];
+                        System.arraycopy(open, 0, newOpen, 0, depth);
+                        open = newOpen;
+                    }
+                    open[depth++] = size;
+                    nodes[size] = event == Event.START_OBJECT ? OBJECT : ARRAY;
+                    nodes[size + 1] = 0;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    nodes[open[--depth] + 2] = size;
+                    if (depth == 0) {
+                        final String[] unescaped = strings.toArray(new String[strings.size()]);
+                        return JsonStructure.class.cast(new JsonTape(chars, nodes, unescaped, stringTable).value(0));
+                    }
+                    break;
+                case KEY_NAME:
+                case VALUE_STRING:
+                    if (parser.fallBackCopyBufferLength > 0) { //the value contained escapes and was unescaped into the value buffer
+                        nodes[size] = ESCAPED_STRING;
+                        nodes[size + 1] = strings.size();
+                        strings.add(parser.getString());
+                    } else {
+                        nodes[size] = STRING;
+                        nodes[size + 1] = parser.startOfValueInBuffer;
+                        nodes[size + 2] = parser.endOfValueInBuffer;
+                    }
+                    break;
+                case VALUE_NUMBER:
+                    nodes[size] = parser.isIntegralNumber() ? INTEGRAL : DECIMAL;
+                    nodes[size + 1] = parser.startOfValueInBuffer;
+                    nodes[size + 2] = parser.endOfValueInBuffer;
+                    break;
+                case VALUE_TRUE:
+                    nodes[size] = TRUE;
+                    break;
+                case VALUE_FALSE:
+                    nodes[size] = FALSE;
+                    break;
+                case VALUE_NULL:
+                    nodes[size] = NULL;
+                    break;
+                default:
+                    throw new JsonParsingException(event.name() + ", shouldn't occur", parser.getLocation());
+            }
+            if (event != Event.END_OBJECT && event != Event.END_ARRAY) {
+                size += NODE;
+            }
+
+            if (!parser.hasNext()) {
+                throw new JsonParsingException("Unexpected end of document", parser.getLocation());
+            }
+            event = parser.next();
+        }
+    }
+
+    //the index of the node after the given one
+    private int skip(final int node) {
+        final int kind = nodes[node];
+        return kind == OBJECT || kind == ARRAY ? nodes[node + 2] : node + NODE;
+    }
+
+    private JsonValue value(final int node) {
+        switch (nodes[node]) {
+            case OBJECT:
+                return new JsonObjectImpl(new ObjectMap(node));
+            case ARRAY:
+                return new JsonArrayImpl(new ArrayValues(node));
+            case STRING:
+                if (stringTable != null) {
+                    return stringTable.get(chars, nodes[node + 1], nodes[node + 2]);
+                }
+                return new JsonStringImpl(string(node));
+            case ESCAPED_STRING:
+                return new JsonStringImpl(string(node));
+            case INTEGRAL:
+                final Long value = AbstractJsonStreamParser.parseLongFromChars(chars, nodes[node + 1], nodes[node + 2]);
+                if (value == null) {
+                    return new JsonNumberImpl(new BigDecimal(chars, nodes[node + 1], nodes[node + 2] - nodes[node + 1]));
+                }
+                return JsonLongImpl.valueOf(value);
+            case DECIMAL:
+                return AbstractJsonStreamParser.decimalNumber(chars, nodes[node + 1], nodes[node + 2]);
+            case TRUE:
+                return JsonValue.TRUE;
+            case FALSE:
+                return JsonValue.FALSE;
+            default:
+                return JsonValue.NULL;
+        }
+    }
+
+    private String string(final int node) {
+        if (nodes[node] == ESCAPED_STRING) {
+            return strings[nodes[node + 1]];
+        }
+        return new String(chars, nodes[node + 1], nodes[node + 2] - nodes[node + 1]);
+    }
+
+    //compare a key node with a key without creating a String
+    private boolean keyEquals(final int node, final String key) {
+        if (nodes[node] == ESCAPED_STRING) {
+            return strings[nodes[node + 1]].equals(key);
+        }
+        final int start = nodes[node + 1];
+        if (nodes[node + 2] - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (chars[start + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //compare two key nodes, only escaped keys are compared as Strings
+    private boolean keysEqual(final int a, final int b) {
+        if (nodes[a] == ESCAPED_STRING) {
+            return keyEquals(b, strings[nodes[a + 1]]);
+        }
+        if (nodes[b] == ESCAPED_STRING) {
+            return keyEquals(a, strings[nodes[b + 1]]);
+        }
+        final int startA = nodes[a + 1];
+        final int startB = nodes[b + 1];
+        final int length = nodes[a + 2] - startA;
+        if (nodes[b + 2] - startB != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[startA + i] != chars[startB + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //the members of an object node, values are created on first access and then kept
+    //the views are shared between threads like the eager JsonObjectImpl, so everything filled lazily is published safely:
+    //the member index is immutable and published through a volatile field, the values through an AtomicReferenceArray
+    private final class ObjectMap extends AbstractMap<String, JsonValue> implements Serializable {
+        private final int node;
+        private transient volatile Members members;
+        private transient volatile Set<Entry<String, JsonValue>> entries;
+
+        private ObjectMap(final int node) {
+            this.node = node;
+        }
+
+        //duplicated keys are merged like the builder of the eager reader does:
+        //the member stays at the position of the first occurrence and gets the value of the last one
+        private Members members() {
+            Members m = members;
+            if (m == null) {
+                final int count = nodes[node + 1];
+                int[] keyNodes = new int[count];
+                final Map<String, Integer> index = count > LINEAR_LOOKUP_LIMIT ? new HashMap<String, Integer>(count * 4 / 3 + 1) : null;
+                int size = 0;
+                int member = node + NODE;
+                for (int i = 0; i < count; i++) {
+                    int existing = -1;
+                    if (index != null) {
+                        final String key = string(member);
+                        final Integer previous = index.get(key);
+                        if (previous != null) {
+                            existing = previous;
+                        } else {
+                            index.put(key, size);
+                        }
+                    } else {
+                        for (int j = 0; j < size; j++) {
+                            if (keysEqual(keyNodes[j], member)) {
+                                existing = j;
+                                break;
+                            }
+                        }
+                    }
+                    if (existing < 0) {
+                        keyNodes[size++] = member;
+                    } else {
+                        keyNodes[existing] = member; //the key is equal, the value of the last occurrence wins
+                    }
+                    member = skip(member + NODE);
+                }
+                if (size < count) {
+                    final int[] distinct = new int[size];
+                    System.arraycopy(keyNodes, 0, distinct, 0, size);
+                    keyNodes = distinct;
+                }
+                m = new Members(keyNodes, index);
+                members = m;
+            }
+            return m;
+        }
+
+        private int indexOf(final String key) {
+            final Members m = members();
+            if (m.index == null) {
+                for (int i = 0; i < m.keyNodes.length; i++) {
+                    if (keyEquals(m.keyNodes[i], key)) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            final Integer i = m.index.get(key);
+            return i == null ? -1 : i;
+        }
+
+        private JsonValue valueAt(final Members m, final int i) {
+            JsonValue v = m.values.get(i);
+            if (v == null) {
+                v = value(m.keyNodes[i] + NODE);
+                m.values.lazySet(i, v);
+            }
+            return v;
+        }
+
+        @Override
+        public JsonValue get(final Object key) {
+            if (!String.class.isInstance(key)) {
+                return null;
+            }
+            final int i = indexOf(String.class.cast(key));
+            return i < 0 ? null : valueAt(members(), i);
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return String.class.isInstance(key) && indexOf(String.class.cast(key)) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return members().keyNodes.length;
+        }
+
+        @Override
+        public Set<Entry<String, JsonValue>> entrySet() {
+            Set<Entry<String, JsonValue>> e = entries;
+            if (e == null) {
+                e = new AbstractSet<Entry<String, JsonValue>>() {
+                    @Override
+                    public Iterator<Entry<String, JsonValue>> iterator() {
+                        final Members m = members();
+                        return new Iterator<Entry<String, JsonValue>>() {
+                            private int i = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return i < m.keyNodes.length;
+                            }
+
+                            @Override
+                            public Entry<String, JsonValue> next() {
+                                if (i >= m.keyNodes.length) {
+                                    throw new NoSuchElementException();
+                                }
+                                final Entry<String, JsonValue> entry =
+                                        new SimpleImmutableEntry<String, JsonValue>(string(m.keyNodes[i]), valueAt(m, i));
+                                i++;
+                                return entry;
+                            }
+
+                            @Override
+                            public void remove() {
+                                throw new UnsupportedOperationException();
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return ObjectMap.this.size();
+                    }
+                };
+                entries = e;
+            }
+            return e;
+        }
+    }
+
+    //the distinct members of an object, never changed after construction
+    private static final class Members {
+        private final int[] keyNodes; //the value node follows its key node
+        private final Map<String, Integer> index; //null for small objects which are searched linearly
+        private final AtomicReferenceArray<JsonValue> values;
+
+        private Members(final int[] keyNodes, final Map<String, Integer> index) {
+            this.keyNodes = keyNodes;
+            this.index = index;
+            this.values = new AtomicReferenceArray<JsonValue>(keyNodes.length);
+        }
+    }
+
+    //the values of an array node, created on first access and then kept, published like the ones of ObjectMap
+    private final class ArrayValues extends AbstractList<JsonValue> implements RandomAccess, Serializable {
+        private final int node;
+        private final AtomicReferenceArray<JsonValue> values;
+        private transient volatile int[] valueNodes;
+
+        private ArrayValues(final int node) {
+            this.node = node;
+            this.values = new AtomicReferenceArray<JsonValue>(nodes[node + 1]);
+        }
+
+        @Override
+        public JsonValue get(final int index) {
+            if (index < 0 || index >= values.length()) {
+                throw new IndexOutOfBoundsException(index + "/" + values.length());
+            }
+            JsonValue v = values.get(index);
+            if (v == null) {
+                int[] n = valueNodes;
+                if (n == null) {
+                    n = new int[values.length()];
+                    int value = node + NODE;
+                    for (int i = 0; i < n.length; i++) {
+                        n[i] = value;
+                        value = skip(value);
+                    }
+                    valueNodes = n;
+                }
+                v = value(n[index]);
+                values.lazySet(index, v);
+            }
+            return v;
+        }
+
+        @Override
+        public int size() {
+            return values.length();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.json.JsonException;
+
+//Compact generator for UTF-8 encoded output streams.
+//Writes the UTF-8 bytes directly into a byte buffer instead of going through an OutputStreamWriter,
+//plain ascii is copied with one check per char, everything else is encoded here.
+class JsonUtf8GeneratorImpl extends JsonGeneratorImpl {
+    //written for an unpaired surrogate, like the replacement of the UTF-8 encoder of the jdk
+    private static final byte REPLACEMENT = '?';
+
+    //the escape sequence of an ascii char, null if the char is written as is
+    //has to stay in sync with JsonGeneratorImpl.writeEscaped0()
+    private static final byte[][] ESCAPES = new byte[128][];
+
+    static {
+        for (char c = 0; c < SPACE; c++) {
+            ESCAPES[c] = unicodeEscape(c);
+        }
+        ESCAPES[EOL] = ascii("\\n");
+        ESCAPES['\r'] = ascii("\\r");
+        ESCAPES['\t'] = ascii("\\t");
+        ESCAPES['\b'] = ascii("\\b");
+        ESCAPES['\f'] = ascii("\\f");
+        ESCAPES[QUOTE_CHAR] = ascii("\\\"");
+        ESCAPES[ESCAPE_CHAR] = ascii("\\\\");
+    }
+
+    //null for subclasses which hand the filled buffers to somewhere else, see flushBytes()
+    private final transient OutputStream out;
+    private final BufferStrategy.BufferProvider<byte[]> byteBufferProvider;
+    private byte[] buffer;
+    private int bufferPos = 0;
+
+    JsonUtf8GeneratorImpl(final OutputStream out, final BufferStrategy.BufferProvider<byte[]> byteBufferProvider,
+            final BufferStrategy.BufferProvider<char[]> bufferProvider, final KeyCache keyCache, final SerializedFormCache serializedForms,
+            final JsonParserFactoryImpl rawParserFactory) {
+        super(bufferProvider, keyCache, serializedForms, rawParserFactory);
+        this.out = out;
+        this.byteBufferProvider = byteBufferProvider;
+        this.buffer = byteBufferProvider.newBuffer();
+    }
+
+    @Override
+    protected void justWrite(final char value) {
+        if (value < 0x80) {
+            writeByte((byte) value);
+        } else {
+            writeNonAscii(value, (char) 0);
+        }
+    }
+
+    @Override
+    protected void justWrite(final char[] chars) {
+        justWrite(chars, 0, chars.length);
+    }
+
+    @Override
+    protected void justWrite(final char[] chars, final int offset, final int length) {
+        final int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            //ascii fast path, copy as much as fits into the buffer
+            final byte[] buffer = this.buffer;
+            final int limit = Math.min(end, i + buffer.length - bufferPos);
+            int pos = bufferPos;
+            char c;
+            while (i < limit && (c = chars[i]) < 0x80) {
+                buffer[pos++] = (byte) c;
+                i++;
+            }
+            bufferPos = pos;
+
+            if (i < limit) {
+                i += writeNonAscii(chars[i], i + 1 < end ? chars[i + 1] : 0);
+            } else if (i < end) {
+                flushBuffer();
+            }
+        }
+    }
+
+    @Override
+    protected void justWrite(final String value) {
+        final int length = value.length();
+        int i = 0;
+        while (i < length) {
+            final byte[] buffer = this.buffer;
+            final int limit = Math.min(length, i + buffer.length - bufferPos);
+            int pos = bufferPos;
+            char c;
+            while (i < limit && (c = value.charAt(i)) < 0x80) {
+                buffer[pos++] = (byte) c;
+                i++;
+            }
+            bufferPos = pos;
+
+            if (i < limit) {
+                i += writeNonAscii(value.charAt(i), i + 1 < length ? value.charAt(i + 1) : 0);
+            } else if (i < length) {
+                flushBuffer();
+            }
+        }
+    }
+
+    //same output as JsonGeneratorImpl.writeEscaped0() encoded as UTF-8, only control chars, quote and backslash are escaped
+    @Override
+    void writeEscaped0(final String value) {
+        if (value == null) {
+            return;
+        }
+
+        final int length = value.length();
+        int i = 0;
+        while (i < length) {
+            final byte[] buffer = this.buffer;
+            final int limit = Math.min(length, i + buffer.length - bufferPos);
+            int pos = bufferPos;
+            char c;
+            while (i < limit && (c = value.charAt(i)) < 0x80 && ESCAPES[c] == null) {
+                buffer[pos++] = (byte) c;
+                i++;
+            }
+            bufferPos = pos;
+
+            if (i < limit) {
+                c = value.charAt(i);
+                if (c < 0x80) {
+                    writeBytes(ESCAPES[c]);
+                    i++;
+                } else {
+                    i += writeNonAscii(c, i + 1 < length ? value.charAt(i + 1) : 0);
+                }
+            } else if (i < length) {
+                flushBuffer();
+            }
+        }
+    }
+
+    //raw fragments are already UTF-8, large ones are written to the stream without copying them into the buffer
+    @Override
+    void justWriteUtf8(final byte[] bytes, final int offset, final int length) {
+        if (length > buffer.length - bufferPos) {
+            flushBuffer();
+            if (length >= buffer.length && out != null) {
+                try {
+                    out.write(bytes, offset, length);
+                } catch (final IOException e) {
+                    throw new JsonException(e.getMessage(), e);
+                }
+                return;
+            }
+        }
+
+        final int end = offset + length;
+        int start = offset;
+        while (start < end) {
+            if (bufferPos >= buffer.length) {
+                flushBuffer();
+            }
+            final int chunk = Math.min(end - start, buffer.length - bufferPos);
+            System.arraycopy(bytes, start, buffer, bufferPos, chunk);
+            bufferPos += chunk;
+            start += chunk;
+        }
+    }
+
+    //the cached form is already encoded too
+    @Override
+    void writeSerializedForm(final SerializedFormCache.Form form) {
+        final byte[] bytes = form.utf8();
+        justWriteUtf8(bytes, 0, bytes.length);
+    }
+
+    //encode a char >= 0x80, next is the following char or 0 and only used for surrogate pairs
+    //returns the number of chars consumed
+    private int writeNonAscii(final char c, final char next) {
+        if (c < 0x800) {
+            writeByte((byte) (0xC0 | (c >> 6)));
+            writeByte((byte) (0x80 | (c & 0x3F)));
+            return 1;
+        }
+        if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+            writeByte((byte) (0xE0 | (c >> 12)));
+            writeByte((byte) (0x80 | ((c >> 6) & 0x3F)));
+            writeByte((byte) (0x80 | (c & 0x3F)));
+            return 1;
+        }
+        if (Character.isHighSurrogate(c) && Character.isLowSurrogate(next)) {
+            final int codePoint = Character.toCodePoint(c, next);
+            writeByte((byte) (0xF0 | (codePoint >> 18)));
+            writeByte((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            writeByte((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            writeByte((byte) (0x80 | (codePoint & 0x3F)));
+            return 2;
+        }
+        writeByte(REPLACEMENT);
+        return 1;
+    }
+
+    private void writeBytes(final byte[] bytes) {
+        for (final byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    private void writeByte(final byte b) {
+        if (bufferPos >= buffer.length) {
+            flushBuffer();
+        }
+        buffer[bufferPos++] = b;
+    }
+
+    @Override
+    void flushBuffer() {
+        if (bufferPos > 0) {
+            try {
+                buffer = flushBytes(buffer, bufferPos);
+                bufferPos = 0;
+            } catch (final IOException e) {
+                throw new JsonException(e.getMessage(), e);
+            }
+        }
+    }
+
+    //hand the first length bytes of the buffer to the output and return the buffer to continue with
+    byte[] flushBytes(final byte[] bytes, final int length) throws IOException {
+        out.write(bytes, 0, length);
+        return bytes;
+    }
+
+    @Override
+    void flushOutput() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    void closeOutput() throws IOException {
+        try {
+            if (out != null) {
+                out.close();
+            }
+        } finally {
+            byteBufferProvider.release(buffer);
+        }
+    }
+
+    private static byte[] unicodeEscape(final char c) {
+        final String hex = "000" + Integer.toHexString(c);
+        return ascii("\\u" + hex.substring(hex.length() - 4));
+    }
+
+    private static byte[] ascii(final String value) {
+        final byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+//This class represents either the Json tokenizer and the Json parser for an UTF-8 encoded InputStream.
+public class JsonUtf8StreamParserImpl extends AbstractJsonUtf8StreamParser {
+
+    //the main buffer where the stream will be buffered
+    private final byte[] buffer;
+
+    private final InputStream in;
+    private final BufferStrategy.BufferProvider<byte[]> bufferProvider;
+
+    //the stream must not start with a BOM, see RFC4627AwareInputStreamReader.getCharset()
+    public JsonUtf8StreamParserImpl(final InputStream inputStream, final int maxStringLength,
+            final BufferStrategy.BufferProvider<byte[]> bufferProvider, final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+
+        this(inputStream, maxStringLength, null, bufferProvider, valueBuffer);
+    }
+
+    JsonUtf8StreamParserImpl(final InputStream inputStream, final int maxStringLength, final SymbolTable symbolTable,
+            final BufferStrategy.BufferProvider<byte[]> bufferProvider, final BufferStrategy.BufferProvider<char[]> valueBuffer) {
+
+        super(maxStringLength, symbolTable, valueBuffer);
+        this.buffer = bufferProvider.newBuffer();
+        this.bufferProvider = bufferProvider;
+        this.in = inputStream;
+    }
+
+    //read the next byte from the stream and set/increment the bufferPos
+    //will also refill buffer if necessary
+    //if we are currently processing a value (string or number) and buffer
+    //refill is necessary decode the already read value part into the value buffer
+    @Override
+    protected final char readNextChar() {
+
+        if ((availableCharsInBuffer - bufferPos) <= 1) {
+            //fillbuffer
+
+            //bytes of an utf-8 sequence cut by the end of the buffer
+            //they are moved to the beginning of the buffer and decoded together with the rest of the value
+            int carry = 0;
+
+            //copy content from old buffer to valuebuffer
+            //correct start end mark
+            if (startOfValueInBuffer > -1 && endOfValueInBuffer == -1) {
+                carry = incompleteSequenceLength(startOfValueInBuffer, availableCharsInBuffer);
+                endOfValueInBuffer = availableCharsInBuffer - carry;
+                copyCurrentValue();
+
+                startOfValueInBuffer = 0;
+            }
+
+            if (bufferPos >= -1) {
+                consumed(availableCharsInBuffer - carry);
+            }
+
+            if (carry > 0) {
+                System.arraycopy(buffer, availableCharsInBuffer - carry, buffer, 0, carry);
+            }
+
+            try {
+                final int read = in.read(buffer, carry, buffer.length - carry);
+                if (read <= 0) {
+                    availableCharsInBuffer = read;
+                    return EOF;
+                }
+                availableCharsInBuffer = carry + read;
+
+            } catch (final IOException e) {
+                close();
+                throw uexio(e);
+            }
+
+            bufferPos = carry;
+            //end fillbuffer
+        } else {
+            bufferPos++;
+        }
+
+        return (char) (buffer[bufferPos] & 0xFF);
+    }
+
+    @Override
+    final void skipStringChars() {
+        bufferPos = skipStringBytes(buffer, bufferPos, availableCharsInBuffer);
+    }
+
+    @Override
+    final byte byteAt(final int index) {
+        return buffer[index];
+    }
+
+    //ascii keys are looked up on the bytes, everything else is decoded first
+    @Override
+    String bufferValueAsKey(final SymbolTable symbols) {
+        final String key = symbols.getAscii(buffer, startOfValueInBuffer, endOfValueInBuffer);
+        if (key != null) {
+            return key;
+        }
+        return super.bufferValueAsKey(symbols);
+    }
+
+    @Override
+    void closeInput() throws IOException {
+        bufferProvider.release(buffer);
+        in.close();
+    }
+}
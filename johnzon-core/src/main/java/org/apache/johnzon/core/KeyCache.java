@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+
+//Bounded cache of escaped key names shared by all generators of a factory, see DirectMappedCache.
+//The cached form contains the quotes and the key separator ("key":) so a key is written with one copy.
+final class KeyCache implements Serializable {
+    //longer keys are rare and would retain too much memory
+    static final int MAX_KEY_LENGTH = 64;
+
+    private final DirectMappedCache<Entry> entries;
+
+    KeyCache(final int size) {
+        this.entries = new DirectMappedCache<Entry>(size);
+    }
+
+    //the escaped form of the key, null if the key is too long to be cached
+    char[] get(final String key) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            return null;
+        }
+
+        final int slot = entries.slot(key.hashCode());
+        final Entry entry = entries.get(slot);
+        if (entry != null && entry.key.equals(key)) {
+            return entry.escaped;
+        }
+
+        final Entry newEntry = new Entry(key, escape(key));
+        entries.set(slot, newEntry);
+        return newEntry.escaped;
+    }
+
+    //exactly what JsonGeneratorImpl.writeEscaped0() writes: only control chars, quote and backslash are escaped,
+    //everything else (e.g. U+0080-U+009F, U+2028) is written as is, so cached keys look like uncached ones and values
+    private static char[] escape(final String key) {
+        final StringBuilder builder = new StringBuilder(key.length() + 3);
+        builder.append(JsonChars.QUOTE_CHAR);
+        for (int i = 0; i < key.length(); i++) {
+            final char c = key.charAt(i);
+            switch (c) {
+                case JsonChars.QUOTE_CHAR:
+                case JsonChars.ESCAPE_CHAR:
+                    builder.append(JsonChars.ESCAPE_CHAR).append(c);
+                    break;
+                case JsonChars.EOL:
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                default:
+                    if (c < JsonChars.SPACE) {
+                        builder.append(JsonGeneratorImpl.toUnicode(c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        builder.append(JsonChars.QUOTE_CHAR).append(JsonChars.KEY_SEPARATOR);
+        final char[] escaped = new char[builder.length()];
+        builder.getChars(0, escaped.length, escaped, 0);
+        return escaped;
+    }
+
+    private static final class Entry implements Serializable {
+        private final String key;
+        private final char[] escaped;
+
+        private Entry(final String key, final char[] escaped) {
+            this.key = key;
+            this.escaped = escaped;
+        }
+    }
+}
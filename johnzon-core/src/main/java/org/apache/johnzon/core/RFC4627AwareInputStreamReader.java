@@ -78,7 +78,8 @@ final class RFC4627AwareInputStreamReader extends InputStreamReader {
 
         */
 
-    private static Charset getCharset(final PushbackInputStream inputStream) {
+    //reads the BOM if there is one, the stream is positioned on the first char afterwards
+    static Charset getCharset(final PushbackInputStream inputStream) {
         Charset charset = Charset.forName("UTF-8");
         int bomLength=0;
         try {
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+
+import javax.json.JsonValue;
+
+//Compact forms of the structures written by the generators of a factory, see JsonGeneratorFactoryImpl.SERIALIZED_FORM_CACHE.
+//Kept beside the structures so instances don't pay for a field when the cache is off.
+//The slot is selected by the identity of the structure (JsonObject/JsonArray equality ignores the member order)
+//and the structure is only weakly referenced, so a cached form doesn't keep it alive, see DirectMappedCache.
+final class SerializedFormCache implements Serializable {
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
+    private final int size;
+    //not serialized, a deserialized factory starts with an empty cache
+    private transient volatile DirectMappedCache<Form> forms;
+
+    SerializedFormCache(final int size) {
+        this.size = size;
+    }
+
+    //the cached form of the structure, null if there is none
+    Form get(final JsonValue structure) {
+        final DirectMappedCache<Form> f = forms();
+        final Form form = f.get(f.slot(System.identityHashCode(structure)));
+        return form != null && form.structure.get() == structure ? form : null;
+    }
+
+    Form put(final JsonValue structure, final char[] chars) {
+        final DirectMappedCache<Form> f = forms();
+        final Form form = new Form(structure, chars);
+        f.set(f.slot(System.identityHashCode(structure)), form);
+        return form;
+    }
+
+    private DirectMappedCache<Form> forms() {
+        DirectMappedCache<Form> f = forms;
+        if (f == null) {
+            f = new DirectMappedCache<Form>(size);
+            forms = f;
+        }
+        return f;
+    }
+
+    //the chars for Writer based generators, the UTF-8 bytes for the OutputStream ones are encoded on their first use
+    static final class Form {
+        private final WeakReference<JsonValue> structure;
+        private final char[] chars;
+        private volatile byte[] utf8;
+
+        private Form(final JsonValue structure, final char[] chars) {
+            this.structure = new WeakReference<JsonValue>(structure);
+            this.chars = chars;
+        }
+
+        char[] chars() {
+            return chars;
+        }
+
+        //same bytes as JsonUtf8GeneratorImpl writes, an unpaired surrogate becomes '?' in both
+        byte[] utf8() {
+            byte[] bytes = utf8;
+            if (bytes == null) {
+                bytes = new String(chars).getBytes(UTF8_CHARSET);
+                utf8 = bytes;
+            }
+            return bytes;
+        }
+    }
+}
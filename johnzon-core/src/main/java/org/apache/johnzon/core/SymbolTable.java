@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Serializable;
+
+//Bounded table of canonical key name instances shared by all parsers of a factory, see DirectMappedCache.
+final class SymbolTable implements Serializable {
+    //longer keys are rare and would retain too much memory
+    static final int MAX_SYMBOL_LENGTH = 64;
+
+    private final DirectMappedCache<String> symbols;
+
+    SymbolTable(final int size) {
+        this.symbols = new DirectMappedCache<String>(size);
+    }
+
+    String get(final char[] chars, final int start, final int end) {
+        final int length = end - start;
+        if (length > MAX_SYMBOL_LENGTH) {
+            return new String(chars, start, length);
+        }
+
+        final int slot = symbols.slot(DirectMappedCache.hash(chars, start, end));
+        final String symbol = symbols.get(slot);
+        if (symbol != null && DirectMappedCache.equals(symbol, chars, start, end)) {
+            return symbol;
+        }
+
+        final String newSymbol = new String(chars, start, length);
+        symbols.set(slot, newSymbol);
+        return newSymbol;
+    }
+
+    //same as above for ascii bytes, returns null if there is a non ascii byte in the range
+    String getAscii(final byte[] bytes, final int start, final int end) {
+        final int length = end - start;
+        if (length > MAX_SYMBOL_LENGTH) {
+            return null;
+        }
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            final byte b = bytes[i];
+            if (b < 0) {
+                return null;
+            }
+            hash = 31 * hash + b;
+        }
+
+        final int slot = symbols.slot(hash);
+        final String symbol = symbols.get(slot);
+        if (symbol != null && symbol.length() == length) {
+            int i = 0;
+            while (i < length && symbol.charAt(i) == bytes[start + i]) {
+                i++;
+            }
+            if (i == length) {
+                return symbol;
+            }
+        }
+
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) bytes[start + i];
+        }
+        final String newSymbol = new String(chars);
+        symbols.set(slot, newSymbol);
+        return newSymbol;
+    }
+}
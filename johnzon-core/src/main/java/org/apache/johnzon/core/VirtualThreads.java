@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+//Detection of virtual threads (Java 21+) without depending on the api, see BufferStrategy.THREAD_LOCAL.
+//The class of the virtual threads is resolved once, the check is then a Class.isInstance() the jit turns into a type check,
+//on older jvms it is a constant false. Thread.isVirtual() would need a reflective call per buffer.
+//Set org.apache.johnzon.virtual-threads to true to treat all threads as virtual ones
+//(e.g. if the detection isn't possible because of a security manager) or to false to disable the detection.
+final class VirtualThreads {
+    public static final String VIRTUAL_THREADS = "org.apache.johnzon.virtual-threads";
+
+    private static final boolean ALL_VIRTUAL;
+    private static final Class<?> VIRTUAL_THREAD_CLASS;
+
+    static {
+        final String config = System.getProperty(VIRTUAL_THREADS);
+        ALL_VIRTUAL = Boolean.parseBoolean(config);
+        VIRTUAL_THREAD_CLASS = config == null ? findVirtualThreadClass() : null;
+    }
+
+    private VirtualThreads() {
+        // no-op
+    }
+
+    static boolean isCurrentThreadVirtual() {
+        if (VIRTUAL_THREAD_CLASS == null) {
+            return ALL_VIRTUAL;
+        }
+        return VIRTUAL_THREAD_CLASS.isInstance(Thread.currentThread());
+    }
+
+    //the common super class of all virtual thread implementations, VirtualThread itself on early versions
+    private static Class<?> findVirtualThreadClass() {
+        if (!hasIsVirtual()) {
+            return null;
+        }
+        for (final String name : new String[] { "java.lang.BaseVirtualThread", "java.lang.VirtualThread" }) {
+            try {
+                return Class.forName(name, false, Thread.class.getClassLoader());
+            } catch (final Throwable e) {
+                // try the next one
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasIsVirtual() {
+        try {
+            Thread.class.getMethod("isVirtual");
+            return true;
+        } catch (final Throwable e) {
+            return false; // older jvm, no virtual threads
+        }
+    }
+}
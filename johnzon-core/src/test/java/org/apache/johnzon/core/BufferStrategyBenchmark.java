@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+
+import org.junit.Test;
+
+//Not run by the build (surefire only picks *Test), run it with mvn test -Dtest=BufferStrategyBenchmark.
+//Compares the buffer strategies with one thread per request: 10k threads started at once, a few small parses each,
+//on virtual threads (Java 21+) and on platform threads otherwise. THREAD_LOCAL takes the BOUNDED pools on virtual
+//threads, on platform threads run it with -Dorg.apache.johnzon.virtual-threads=true to get the same path.
+public class BufferStrategyBenchmark {
+    private static final int THREADS = Integer.getInteger("johnzon.benchmark.threads", 10000);
+    private static final int PARSES = Integer.getInteger("johnzon.benchmark.parses", 5);
+    private static final int ROUNDS = Integer.getInteger("johnzon.benchmark.rounds", 5);
+
+    @Test
+    public void oneThreadPerRequest() throws Exception {
+        final ThreadStarter starter = new ThreadStarter();
+        System.out.println("BufferStrategyBenchmark: " + THREADS + (starter.ofVirtual == null ? " platform" : " virtual")
+                + " threads, " + PARSES + " parses each, detection=" + System.getProperty(VirtualThreads.VIRTUAL_THREADS, "auto"));
+        for (final BufferStrategy strategy : new BufferStrategy[] {
+                BufferStrategy.THREAD_LOCAL, BufferStrategy.QUEUE, BufferStrategy.BOUNDED }) {
+            final Map<String, Object> config = new HashMap<String, Object>();
+            config.put(JsonParserFactoryImpl.BUFFER_STRATEGY, strategy.name());
+            final JsonParserFactory factory = Json.createParserFactory(config);
+            for (int round = 0; round < ROUNDS; round++) {
+                final long start = System.nanoTime();
+                assertEquals(THREADS * PARSES * 9, run(starter, factory));
+                System.out.println(strategy + ": " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+        }
+    }
+
+    private static int run(final ThreadStarter starter, final JsonParserFactory factory) throws Exception {
+        final AtomicInteger events = new AtomicInteger();
+        final Runnable request = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < PARSES; i++) {
+                    final JsonParser parser = factory.createParser(new StringReader("{\"id\":1,\"tags\":[\"a\",\"b\"]}"));
+                    while (parser.hasNext()) {
+                        parser.next();
+                        events.incrementAndGet();
+                    }
+                    parser.close();
+                }
+            }
+        };
+        final List<Thread> threads = new ArrayList<Thread>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(starter.start(request));
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        return events.get();
+    }
+
+    //Thread.ofVirtual().start(runnable) without depending on the Java 21 api
+    private static class ThreadStarter {
+        private final Method ofVirtual;
+        private final Method start;
+
+        private ThreadStarter() {
+            Method builder = null;
+            Method startMethod = null;
+            try {
+                builder = Thread.class.getMethod("ofVirtual");
+                startMethod = Class.forName("java.lang.Thread$Builder").getMethod("start", Runnable.class);
+            } catch (final Exception e) {
+                builder = null; // platform threads
+            }
+            this.ofVirtual = builder;
+            this.start = startMethod;
+        }
+
+        private Thread start(final Runnable runnable) throws Exception {
+            if (ofVirtual == null) {
+                final Thread thread = new Thread(runnable);
+                thread.start();
+                return thread;
+            }
+            return (Thread) start.invoke(ofVirtual.invoke(null), runnable);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class BufferStrategyTest {
+    @Test
+    public void boundedBufferStrategy() {
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put(JsonParserFactoryImpl.BUFFER_STRATEGY, "bounded");
+        config.put(JsonParserFactoryImpl.BUFFER_LENGTH, 16);
+        final JsonParserFactory factory = Json.createParserFactory(config);
+        for (int i = 0; i < 3; i++) {
+            final JsonParser parser = factory.createParser(new StringReader("{\"a\":[1,\"long value which grows the value buffer\",true]}"));
+            int events = 0;
+            while (parser.hasNext()) {
+                parser.next();
+                events++;
+            }
+            parser.close();
+            assertEquals(8, events);
+        }
+
+        // bounded by slots and retained bytes, trimmed when idle
+        final BoundedBufferPool pool = new BoundedBufferPool(100, 4, 60000, 2);
+        final BoundedBufferPool.SizeClass<char[]> chars = pool.sizeClass("char", 10, 2);
+        final BoundedBufferPool.SizeClass<char[]> moreChars = pool.sizeClass("char", 10, 2);
+        assertTrue(chars == moreChars);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(chars.offer(new char[10]));
+        }
+        assertFalse(chars.offer(new char[10])); // no slot left
+        assertEquals(80, pool.getRetainedBytes());
+        assertFalse(pool.<byte[]>sizeClass("byte", 30, 1).offer(new byte[30])); // more than 100 bytes
+        assertTrue(pool.<byte[]>sizeClass("byte", 20, 1).offer(new byte[20]));
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(chars.poll());
+        }
+        assertEquals(null, chars.poll());
+        assertEquals(20, pool.getRetainedBytes());
+
+        // only builders of the provider size are pooled, so the retained bytes stay exact
+        final BufferStrategy.InstrumentedBufferProvider<StringBuilder> builders =
+                (BufferStrategy.InstrumentedBufferProvider<StringBuilder>) BufferStrategy.BOUNDED.newStringBuilderProvider(24);
+        final StringBuilder grown = builders.newBuffer().append(repeat('x', 25));
+        final StringBuilder kept = builders.newBuffer().append("x");
+        final long retained = builders.getStats().getRetainedBytes();
+        builders.release(grown);
+        builders.release(kept);
+        assertEquals(1, builders.getStats().getDropped());
+        assertEquals(retained + 48, builders.getStats().getRetainedBytes());
+        assertEquals(0, builders.newBuffer().length());
+
+        final BoundedBufferPool idlePool = new BoundedBufferPool(100, 4, 0, 2);
+        assertTrue(idlePool.<byte[]>sizeClass("byte", 20, 1).offer(new byte[20]));
+        assertEquals(20, idlePool.getRetainedBytes());
+        idlePool.<byte[]>sizeClass("byte", 10, 1).poll(); // trims the idle size classes
+        assertEquals(0, idlePool.getRetainedBytes());
+    }
+
+    @Test
+    public void directBufferStrategy() throws Exception {
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put(JsonParserFactoryImpl.BUFFER_STRATEGY, "direct");
+        config.put(JsonParserFactoryImpl.BUFFER_LENGTH, 8);
+        final JsonParserFactory factory = Json.createParserFactory(config);
+        final String json = "{\"a\":[1,\"caf\u00e9 value spanning several buffers\",true]}";
+        final byte[] utf8 = json.getBytes("UTF-8");
+        final byte[] bom = new byte[utf8.length + 3];
+        bom[0] = (byte) 0xEF;
+        bom[1] = (byte) 0xBB;
+        bom[2] = (byte) 0xBF;
+        System.arraycopy(utf8, 0, bom, 3, utf8.length);
+        for (final byte[] bytes : new byte[][] { utf8, bom, json.getBytes("UTF-16BE") }) {
+            final JsonParser parser = ((JohnzonJsonParserFactory) factory).createParser(Channels.newChannel(new ByteArrayInputStream(bytes)));
+            final List<String> strings = new ArrayList<String>();
+            int events = 0;
+            while (parser.hasNext()) {
+                if (parser.next() == JsonParser.Event.VALUE_STRING) {
+                    strings.add(parser.getString());
+                }
+                events++;
+            }
+            parser.close();
+            assertEquals(8, events);
+            assertEquals(asList("caf\u00e9 value spanning several buffers"), strings);
+        }
+
+        // released buffers are tracked with leak detection
+        final DirectByteBufferProvider provider = new DirectByteBufferProvider(16, true);
+        final ByteBuffer buffer = provider.newBuffer();
+        assertTrue(buffer.isDirect());
+        assertEquals(1, provider.getOutstandingBuffers());
+        provider.release(buffer);
+        assertEquals(0, provider.getOutstandingBuffers());
+        assertEquals(-1, new DirectByteBufferProvider(16).getOutstandingBuffers());
+    }
+
+    @Test
+    public void directBufferProviderSerialization() throws Exception {
+        final DirectByteBufferProvider provider = new DirectByteBufferProvider(16, true);
+        provider.release(provider.newBuffer());
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(provider);
+        out.close();
+        final DirectByteBufferProvider deserialized = (DirectByteBufferProvider) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        final ByteBuffer buffer = deserialized.newBuffer();
+        assertTrue(buffer.isDirect());
+        assertEquals(16, buffer.capacity());
+        assertEquals(1, deserialized.getOutstandingBuffers());
+        deserialized.release(buffer);
+        assertEquals(0, deserialized.getOutstandingBuffers());
+        assertEquals(2, deserialized.getStats().getRequests());
+    }
+
+    @Test
+    public void bufferStats() throws Exception {
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put(JsonParserFactoryImpl.BUFFER_LENGTH, 16);
+        config.put(JsonParserFactoryImpl.BUFFER_STATS_JMX, true);
+        final JsonParserFactoryImpl factory = (JsonParserFactoryImpl) Json.createParserFactory(config);
+        for (int i = 0; i < 2; i++) {
+            final JsonParser parser = factory.createParser(new StringReader("{\"a\":[1,true]}"));
+            while (parser.hasNext()) {
+                parser.next();
+            }
+            parser.close();
+        }
+
+        final BufferStats stats = factory.getBufferStats().get("char");
+        assertEquals("QUEUE", stats.getStrategy());
+        assertEquals(16, stats.getBufferSize());
+        assertEquals(2, stats.getRequests());
+        assertEquals(1, stats.getAllocations());
+        assertEquals(1, stats.getReuses());
+        assertEquals(0.5, stats.getHitRate(), 0.);
+        assertEquals(2, stats.getReleases());
+        assertEquals(0, stats.getDropped());
+        assertEquals(32, stats.getRetainedBytes());
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = factory.bufferStatsName("char");
+        try {
+            assertEquals(2L, server.getAttribute(name, "Requests"));
+            assertEquals(0.5, (Double) server.getAttribute(name, "HitRate"), 0.);
+        } finally {
+            factory.unregisterBufferStats();
+        }
+        for (final String buffer : factory.getBufferStats().keySet()) {
+            assertFalse(server.isRegistered(factory.bufferStatsName(buffer)));
+        }
+        assertEquals(2, factory.getBufferStats().get("char").getRequests());
+
+        // no increment is lost when threads share a stripe
+        final BufferStats shared = new BufferStats("QUEUE", "char", 16, (BufferStats.Gauges) BufferStrategy.QUEUE.newCharProvider(16));
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        shared.request();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000, shared.getRequests());
+
+        // nothing is kept by instance
+        final BufferStrategy.InstrumentedBufferProvider<char[]> byInstance =
+                (BufferStrategy.InstrumentedBufferProvider<char[]>) BufferStrategy.BY_INSTANCE.newCharProvider(16);
+        byInstance.release(byInstance.newBuffer());
+        assertEquals(1, byInstance.getStats().getAllocations());
+        assertEquals(1, byInstance.getStats().getDropped());
+        assertEquals(0, byInstance.getStats().getRetainedBytes());
+    }
+
+    @Test
+    public void bufferStatsOfCollectedFactoriesAreUnregistered() throws Exception {
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put(JsonParserFactoryImpl.BUFFER_STATS_JMX, true);
+        JsonParserFactoryImpl factory = (JsonParserFactoryImpl) Json.createParserFactory(config);
+        final ObjectName name = factory.bufferStatsName("char");
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(name));
+        final JsonParserFactoryImpl other = (JsonParserFactoryImpl) Json.createParserFactory(config);
+        assertFalse(name.equals(other.bufferStatsName("char")));
+        other.unregisterBufferStats();
+
+        final WeakReference<JsonParserFactoryImpl> reference = new WeakReference<JsonParserFactoryImpl>(factory);
+        factory = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        if (reference.get() != null) {
+            return; // the jvm didn't collect it, nothing to check
+        }
+        // unregistered in the background, no other factory has to register
+        for (int i = 0; i < 500 && server.isRegistered(name); i++) {
+            Thread.sleep(10);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void threadLocalOnVirtualThreads() throws Exception {
+        @SuppressWarnings("unchecked")
+        final BufferStrategy.InstrumentedBufferProvider<char[]> provider =
+                (BufferStrategy.InstrumentedBufferProvider<char[]>) BufferStrategy.THREAD_LOCAL.newCharProvider(16);
+        if (System.getProperty(VirtualThreads.VIRTUAL_THREADS) == null) {
+            assertFalse(VirtualThreads.isCurrentThreadVirtual());
+        }
+        final char[] buffer = provider.newBuffer();
+        provider.release(buffer);
+        assertTrue(buffer == provider.newBuffer()); // kept by the platform thread
+        assertEquals(2, provider.getStats().getRequests());
+        assertEquals(1, provider.getStats().getAllocations());
+
+        final Method ofVirtual;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (final NoSuchMethodException e) {
+            return; // no virtual threads on this jvm
+        }
+        final Method start = Class.forName("java.lang.Thread$Builder").getMethod("start", Runnable.class);
+        final List<Object> result = new ArrayList<Object>();
+        for (int i = 0; i < 2; i++) {
+            final Thread thread = (Thread) start.invoke(ofVirtual.invoke(null), new Runnable() {
+                @Override
+                public void run() {
+                    final char[] pooled = provider.newBuffer();
+                    provider.release(pooled);
+                    result.add(VirtualThreads.isCurrentThreadVirtual());
+                }
+            });
+            thread.join();
+        }
+        assertEquals(asList(true, true), result);
+        // the second virtual thread reused the buffer of the first one from the pool
+        assertEquals(4, provider.getStats().getRequests());
+        assertEquals(2, provider.getStats().getAllocations());
+    }
+
+    private static String repeat(final char c, final int times) {
+        final char[] chars = new char[times];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -18,17 +18,31 @@
  */
 package org.apache.johnzon.core;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.json.Json;
 import javax.json.JsonValue;
 import javax.json.stream.JsonGenerationException;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 
 import org.junit.Test;
 
@@ -278,4 +292,296 @@ public class JsonGeneratorImplTest {
                         "  ]\n" +
                         "}", new String(baos.toByteArray()));
     }
+
+    @Test
+    public void keyCache() {
+        final String[] keys = { "a", "quote\"d", "tab\tand\u0001control", "back\\slash", "\u00e9t\u00e9", "long-key-long-key-long-key",
+            "\u20ac", "line\u2028separator", "c1\u0085control" };
+        final String expected = writeKeys(0, 64 * 1024, keys);
+        // like values, chars >= space other than quote and backslash are written as they are
+        assertEquals("{\"a\":0,\"quote\\\"d\":1,\"tab\\tand\\u0001control\":2,\"back\\\\slash\":3,\"\u00e9t\u00e9\":4,"
+                + "\"long-key-long-key-long-key\":5,\"\u20ac\":6,\"line\u2028separator\":7,\"c1\u0085control\":8}", expected);
+
+        // tiny buffers force a flush in the middle of the cached keys, the second write reads them from the cache
+        for (int bufferLength = 1; bufferLength < 12; bufferLength++) {
+            assertEquals(expected, writeKeys(16, bufferLength, keys));
+        }
+        assertEquals(expected, writeKeys(1, 64 * 1024, keys)); // collisions replace the entry
+    }
+
+    private static String writeKeys(final int keyCacheSize, final int bufferLength, final String[] keys) {
+        final JsonGeneratorFactory factory = Json.createGeneratorFactory(new HashMap<String, Object>() {{
+            put(JsonGeneratorFactoryImpl.KEY_CACHE_SIZE, keyCacheSize);
+            put(JsonGeneratorFactoryImpl.GENERATOR_BUFFER_LENGTH, bufferLength);
+        }});
+        String result = null;
+        for (int run = 0; run < 2; run++) {
+            final StringWriter writer = new StringWriter();
+            final JsonGenerator generator = factory.createGenerator(writer).writeStartObject();
+            for (int i = 0; i < keys.length; i++) {
+                generator.write(keys[i], i);
+            }
+            generator.writeEnd().close();
+            assertEquals(result == null ? writer.toString() : result, writer.toString());
+            result = writer.toString();
+        }
+        return result;
+    }
+
+    @Test
+    public void utf8Bytes() throws UnsupportedEncodingException {
+        final String value = "ascii \"quoted\" back\\slash \n\r\t\b\f\u0001\u001f \u007f \u0085 \u00a0 \u00e9 \u07ff \u0800 \u2028 \u20ac "
+                + "\uffff \ud83d\ude00 unpaired \ud83d end \ude00";
+        for (int bufferLength = 1; bufferLength < 20; bufferLength++) {
+            final JsonGeneratorFactory factory = Json.createGeneratorFactory(
+                    Collections.singletonMap(JsonGeneratorFactoryImpl.GENERATOR_BUFFER_LENGTH, bufferLength));
+
+            final StringWriter writer = new StringWriter();
+            factory.createGenerator(writer).writeStartObject().write(value, value).write("n", 1.5).writeEnd().close();
+            final byte[] expected = writer.toString().getBytes("UTF-8");
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final JsonGenerator generator = factory.createGenerator(out);
+            assertTrue(JsonUtf8GeneratorImpl.class.isInstance(generator));
+            generator.writeStartObject().write(value, value).write("n", 1.5).writeEnd().close();
+            assertArrayEquals(expected, out.toByteArray());
+
+            final ByteArrayOutputStream charsetOut = new ByteArrayOutputStream();
+            factory.createGenerator(charsetOut, Charset.forName("UTF-8")).writeStartObject().write(value, value).write("n", 1.5).writeEnd().close();
+            assertArrayEquals(expected, charsetOut.toByteArray());
+        }
+    }
+
+    @Test
+    public void doubles() {
+        final double[] values = { 0., -0., 1., -1., 0.1, 0.2, 0.3, 1.5, 23.456, -98.765, 0.001, 0.0015, 123456.789, 9999999.999,
+                1e-4, 1e7, 1.0E23, 4.9E-324, Double.MAX_VALUE, 0.1 + 0.2, 1. / 3, 2. / 3, Math.PI, Math.E };
+        final StringWriter writer = new StringWriter();
+        final JsonGenerator generator = Json.createGenerator(writer).writeStartArray();
+        for (final double value : values) {
+            generator.write(value);
+        }
+        generator.writeEnd().close();
+
+        final StringBuilder expected = new StringBuilder("[");
+        for (final double value : values) {
+            expected.append(expected.length() > 1 ? "," : "").append(Double.toString(value));
+        }
+        assertEquals(expected.append("]").toString(), writer.toString());
+
+        // shortest representation which reads back as the same double
+        final Random random = new Random(1234);
+        for (int i = 0; i < 100000; i++) {
+            final double value = random.nextDouble() * Math.pow(10, random.nextInt(14) - 4);
+            final double rounded = Math.round(value * 1000) / 1000.;
+            for (final double d : new double[] { value, rounded, -rounded }) {
+                final String formatted = Doubles.toString(d);
+                assertEquals(formatted, d, Double.parseDouble(formatted), 0.);
+                assertTrue(formatted, formatted.length() <= Double.toString(d).length());
+            }
+            assertEquals(Double.toString(rounded), Doubles.toString(rounded));
+        }
+    }
+
+    @Test
+    public void raw() throws UnsupportedEncodingException {
+        final String fragment = "{\"name\":\"caf\u00e9 \ud83d\ude00\",\"values\":[1,2.5,null]}";
+        final char[] chars = ("xx" + fragment + "xx").toCharArray();
+        final byte[] bytes = ("xx" + fragment + "xx").getBytes("UTF-8");
+        final int byteLength = fragment.getBytes("UTF-8").length;
+        final String expected = "{\"a\":" + fragment + ",\"b\":" + fragment + ",\"c\":" + fragment
+                + ",\"d\":[" + fragment + "," + fragment + "," + fragment + ",true]}";
+
+        for (final int bufferLength : new int[] { 1, 7, 64 * 1024 }) {
+            for (final boolean validate : new boolean[] { false, true }) {
+                final JsonGeneratorFactory factory = Json.createGeneratorFactory(new HashMap<String, Object>() {{
+                    put(JsonGeneratorFactoryImpl.GENERATOR_BUFFER_LENGTH, bufferLength);
+                    put(JsonGeneratorFactoryImpl.VALIDATE_RAW, validate);
+                }});
+
+                final StringWriter writer = new StringWriter();
+                writeRaw((JohnzonJsonGenerator) factory.createGenerator(writer), new StringBuilder(fragment), chars, bytes, byteLength);
+                assertEquals(expected, writer.toString());
+
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                writeRaw((JohnzonJsonGenerator) factory.createGenerator(out), fragment, chars, bytes, byteLength);
+                assertEquals(expected, new String(out.toByteArray(), "UTF-8"));
+            }
+        }
+
+        final StringWriter writer = new StringWriter();
+        ((JohnzonJsonGenerator) Json.createGenerator(writer)).writeRaw("[1, 2]").close();
+        assertEquals("[1, 2]", writer.toString());
+    }
+
+    private static void writeRaw(final JohnzonJsonGenerator generator, final CharSequence fragment, final char[] chars,
+                                 final byte[] bytes, final int byteLength) {
+        generator.writeStartObject();
+        generator.writeRaw("a", fragment);
+        generator.writeRaw("b", chars, 2, chars.length - 4);
+        generator.writeRaw("c", bytes, 2, byteLength);
+        generator.writeStartArray("d");
+        generator.writeRaw(fragment);
+        generator.writeRaw(chars, 2, chars.length - 4);
+        generator.writeRaw(bytes, 2, byteLength);
+        generator.write(true);
+        generator.writeEnd().writeEnd().close();
+    }
+
+    @Test
+    public void rawValidation() {
+        final JsonGeneratorFactory factory = Json.createGeneratorFactory(
+                Collections.singletonMap(JsonGeneratorFactoryImpl.VALIDATE_RAW, true));
+        for (final String json : new String[] { "", "{", "[1,]", "1 2", "{} {}", "tru", "\"unclosed", "1]x", "1] ", "{}][2", "[1]]" }) {
+            final JohnzonJsonGenerator generator = (JohnzonJsonGenerator) factory.createGenerator(new StringWriter());
+            generator.writeStartArray();
+            try {
+                generator.writeRaw(json);
+                fail(json);
+            } catch (final JsonGenerationException e) {
+                // ok
+            }
+        }
+
+        final byte[] trailing = "1]x".getBytes();
+        try {
+            ((JohnzonJsonGenerator) factory.createGenerator(new StringWriter()).writeStartArray()).writeRaw(trailing, 0, trailing.length);
+            fail("1]x");
+        } catch (final JsonGenerationException e) {
+            // ok
+        }
+
+        final StringWriter writer = new StringWriter();
+        final JohnzonJsonGenerator generator = (JohnzonJsonGenerator) factory.createGenerator(writer);
+        generator.writeStartArray();
+        for (final String json : new String[] { "1", "-2.5e3", "true", "null", "\"s\"", " { } ", "[[]]" }) {
+            generator.writeRaw(json);
+        }
+        generator.writeEnd().close();
+        assertEquals("[1,-2.5e3,true,null,\"s\", { } ,[[]]]", writer.toString());
+    }
+
+    @Test
+    public void rawPrettyPrinted() {
+        final JsonGeneratorFactory factory = Json.createGeneratorFactory(
+                Collections.singletonMap(JsonGenerator.PRETTY_PRINTING, true));
+        final StringWriter raw = new StringWriter();
+        final JohnzonJsonGenerator generator = (JohnzonJsonGenerator) factory.createGenerator(raw);
+        generator.writeStartObject();
+        generator.writeRaw("a", "1");
+        generator.writeRaw("b", "true".toCharArray(), 0, 4);
+        generator.writeStartArray("c");
+        generator.writeRaw("\"s\"");
+        generator.writeRaw("null".getBytes(), 0, 4);
+        generator.writeEnd().writeEnd().close();
+
+        final StringWriter expected = new StringWriter();
+        factory.createGenerator(expected).writeStartObject().write("a", 1).write("b", true)
+                .writeStartArray("c").write("s").writeNull().writeEnd().writeEnd().close();
+        assertEquals(expected.toString(), raw.toString());
+    }
+
+    @Test
+    public void async() throws UnsupportedEncodingException {
+        final JohnzonJsonGeneratorFactory factory = (JohnzonJsonGeneratorFactory) Json.createGeneratorFactory(new HashMap<String, Object>() {{
+            put(JsonGeneratorFactoryImpl.GENERATOR_BUFFER_LENGTH, 16);
+            put(JsonGeneratorFactoryImpl.ASYNC_MAX_PENDING_BUFFERS, 2);
+        }});
+        final List<ByteBuffer> pending = new ArrayList<ByteBuffer>();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final JohnzonJsonAsyncGenerator generator = factory.createAsyncGenerator(new JohnzonJsonAsyncGenerator.Sink() {
+            @Override
+            public void accept(final ByteBuffer buffer) {
+                out.write(buffer.array(), buffer.position(), buffer.remaining());
+                pending.add(buffer);
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+
+        final StringWriter expected = new StringWriter();
+        final JsonGenerator reference = factory.createGenerator(expected);
+
+        generator.writeStartArray();
+        reference.writeStartArray();
+        int written = 0;
+        while (generator.isWritable()) {
+            generator.write("caf\u00e9 " + written);
+            reference.write("caf\u00e9 " + written);
+            written++;
+        }
+        assertEquals(2, pending.size());
+
+        // not writable any more but writes are still accepted
+        generator.write(1.5);
+        generator.writeRaw("{\"raw\":true}");
+        reference.write(1.5);
+        ((JohnzonJsonGenerator) reference).writeRaw("{\"raw\":true}");
+        assertFalse(generator.isWritable());
+
+        final ByteBuffer released = pending.get(0);
+        for (final ByteBuffer buffer : new ArrayList<ByteBuffer>(pending)) {
+            generator.release(buffer);
+            pending.remove(buffer);
+        }
+        assertTrue(generator.isWritable());
+
+        // a buffer is released only once and only to the generator which handed it over
+        assertReleaseRejected(generator, released);
+        assertReleaseRejected(generator, ByteBuffer.wrap(new byte[16]));
+        assertTrue(generator.isWritable());
+
+        generator.flush();
+        assertTrue(out.size() > 0 && !closed.get());
+        generator.writeEnd().close();
+        reference.writeEnd().close();
+        assertTrue(closed.get());
+        assertEquals(expected.toString(), new String(out.toByteArray(), "UTF-8"));
+    }
+
+    @Test
+    public void asyncDirect() throws UnsupportedEncodingException {
+        final JohnzonJsonGeneratorFactory factory = (JohnzonJsonGeneratorFactory) Json.createGeneratorFactory(new HashMap<String, Object>() {{
+            put(JsonGeneratorFactoryImpl.GENERATOR_BUFFER_LENGTH, 16);
+            put(JsonGeneratorFactoryImpl.BUFFER_STRATEGY, "direct");
+        }});
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        final JohnzonJsonAsyncGenerator generator = factory.createAsyncGenerator(new JohnzonJsonAsyncGenerator.Sink() {
+            @Override
+            public void accept(final ByteBuffer buffer) {
+                assertTrue(buffer.isDirect());
+                final byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.write(bytes, 0, bytes.length);
+                buffers.add(buffer);
+            }
+
+            @Override
+            public void close() {
+                // no-op
+            }
+        });
+        generator.writeStartObject().write("key", "caf\u00e9 value longer than one buffer").writeEnd().close();
+        assertTrue(buffers.size() > 1);
+        for (final ByteBuffer buffer : buffers) {
+            generator.release(buffer);
+        }
+        assertTrue(generator.isWritable());
+        assertReleaseRejected(generator, buffers.get(0));
+        assertEquals("{\"key\":\"caf\u00e9 value longer than one buffer\"}", new String(out.toByteArray(), "UTF-8"));
+    }
+
+    private static void assertReleaseRejected(final JohnzonJsonAsyncGenerator generator, final ByteBuffer buffer) {
+        try {
+            generator.release(buffer);
+            fail();
+        } catch (final IllegalStateException expected) {
+            // no-op
+        }
+    }
 }
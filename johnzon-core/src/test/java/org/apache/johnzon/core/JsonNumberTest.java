@@ -18,6 +18,7 @@
  */
 package org.apache.johnzon.core;
 
+import java.io.StringReader;
 import java.math.BigInteger;
 
 import javax.json.Json;
@@ -48,4 +49,19 @@ public class JsonNumberTest {
        
     }
 
+    @Test
+    public void smallIntegersAreShared() {
+        final JsonArray built = Json.createArrayBuilder().add(0).add(0L).add(1023).add(1023).add(1024).add(1024).add(-128).add(-128).build();
+        final JsonArray read = Json.createReader(new StringReader("[0,0,1023,1023,1024,1024,-128,-128,\"\"]")).readArray();
+        for (final JsonArray array : new JsonArray[] { built, read }) {
+            Assert.assertSame(array.get(0), array.get(1));
+            Assert.assertSame(array.get(2), array.get(3));
+            Assert.assertNotSame(array.get(4), array.get(5));
+            Assert.assertSame(array.get(6), array.get(7));
+            Assert.assertEquals(1024, array.getInt(4));
+            Assert.assertEquals(-128, array.getInt(6));
+        }
+        Assert.assertSame(built.get(0), read.get(0));
+        Assert.assertSame(JsonLongImpl.valueOf(7), Json.createObjectBuilder().add("a", 7).build().get("a"));
+    }
 }
@@ -19,9 +19,19 @@
 package org.apache.johnzon.core;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.json.Json;
+import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
 
 import org.junit.Test;
 
@@ -32,4 +42,39 @@ public class JsonObjectBuilderImplTest {
         builder.add("a", "b");
         assertEquals("{\"a\":\"b\"}", builder.build().toString());
     }
+
+    @Test
+    public void compactAndLargeObjectsBehaveLikeMaps() {
+        for (final int size : new int[] { 1, JsonObjectBuilderImpl.COMPACT_OBJECT_LIMIT, JsonObjectBuilderImpl.COMPACT_OBJECT_LIMIT + 1, 50 }) {
+            final JsonObjectBuilder builder = Json.createObjectBuilder();
+            final Map<String, JsonValue> expected = new LinkedHashMap<String, JsonValue>();
+            for (int i = 0; i < size; i++) {
+                builder.add("k" + i, i);
+                expected.put("k" + i, new JsonLongImpl(i));
+            }
+            builder.add("k0", "replaced"); //keeps its position
+            expected.put("k0", new JsonStringImpl("replaced"));
+
+            final JsonObject object = builder.build();
+            assertEquals(expected, object);
+            assertEquals(expected.hashCode(), object.hashCode());
+            assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(object.keySet()));
+            assertEquals(size, object.size());
+            assertEquals("replaced", object.getString("k0"));
+            assertEquals(size > 1 ? size - 1 : -1, object.getInt("k" + (size - 1), -1));
+            assertTrue(object.containsKey("k0"));
+            assertFalse(object.containsKey("missing"));
+            assertNull(object.get("missing"));
+            assertNull(object.get(null));
+            try {
+                object.put("x", JsonValue.NULL);
+                fail("objects are immutable");
+            } catch (final UnsupportedOperationException e) {
+                //ok
+            }
+
+            //the builder is empty again after build()
+            assertEquals(0, builder.build().size());
+        }
+    }
 }
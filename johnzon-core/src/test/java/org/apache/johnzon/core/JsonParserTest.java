@@ -18,6 +18,7 @@
  */
 package org.apache.johnzon.core;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -25,14 +26,25 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.CharArrayReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import javax.json.Json;
@@ -43,6 +55,7 @@ import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
 import javax.json.stream.JsonParsingException;
 
 import org.junit.Test;
@@ -791,6 +804,39 @@ public class JsonParserTest {
         }
     }
 
+    @Test
+    public void maxStringLengthCountsChars() throws IOException {
+        final String ok = "\u00e9\u00e9\u00e9\ud83d\ude00\ud83d\ude00a\u00e9\u00e9"; // 10 chars, 21 bytes
+        final String tooLong = ok + "\u00e9";
+        for (final int bufferLength : new int[] { 8, 64 * 1024 }) {
+            final JohnzonJsonParserFactory factory = (JohnzonJsonParserFactory) Json.createParserFactory(new HashMap<String, Object>() {{
+                put(JsonParserFactoryImpl.MAX_STRING_LENGTH, 10);
+                put(JsonParserFactoryImpl.BUFFER_LENGTH, bufferLength);
+            }});
+            for (final String value : new String[] { ok, tooLong }) {
+                final String json = "[\"" + value + "\",\"x\"]";
+                final byte[] bytes = json.getBytes("UTF-8");
+                final JohnzonJsonAsyncParser async = factory.createAsyncParser();
+                async.feed(bytes, 0, bytes.length);
+                async.endOfInput();
+                for (final JsonParser parser : new JsonParser[] {
+                        factory.createParser(new StringReader(json)), factory.createParser(new ByteArrayInputStream(bytes)),
+                        factory.createParser(ByteBuffer.wrap(bytes)), async }) {
+                    try {
+                        assertEquals(Event.START_ARRAY, parser.next());
+                        assertEquals(Event.VALUE_STRING, parser.next());
+                        assertEquals(value, parser.getString());
+                        assertTrue(parser.getClass().getName(), value == ok);
+                    } catch (final JsonParsingException e) {
+                        assertTrue(parser.getClass().getName() + ": " + e.getMessage(), value == tooLong);
+                    } finally {
+                        parser.close();
+                    }
+                }
+            }
+        }
+    }
+
     @Test
     public void hasNext() {
         final JsonParser parser = Json.createParserFactory(new HashMap<String, Object>() {{
@@ -1637,6 +1683,627 @@ public class JsonParserTest {
         }
     }
     
+    @Test
+    public void utf8MultiByteCharsVariousBufferSizes() {
+        final String value = "a\u00e9\u20ac\ud83d\ude00z"; // 1, 2, 3 and 4 bytes sequences
+        final byte[] bytes = ("{\"" + value + "\":[\"" + value + "\\n" + value + "\", 12.5]}").getBytes(UTF_8);
+
+        for (int i = 1; i < bytes.length + 2; i++) {
+            final String size = String.valueOf(i);
+            final JsonParser parser = Json.createParserFactory(new HashMap<String, Object>() {
+                {
+                    put("org.apache.johnzon.default-char-buffer", size);
+                }
+            }).createParser(new ByteArrayInputStream(bytes));
+
+            assertEquals(Event.START_OBJECT, parser.next());
+            assertEquals(Event.KEY_NAME, parser.next());
+            assertEquals(value, parser.getString());
+            assertEquals(Event.START_ARRAY, parser.next());
+            assertEquals(Event.VALUE_STRING, parser.next());
+            assertEquals(value + "\n" + value, parser.getString());
+            assertEquals(Event.VALUE_NUMBER, parser.next());
+            assertEquals(new BigDecimal("12.5"), parser.getBigDecimal());
+            assertEquals(Event.END_ARRAY, parser.next());
+            assertEquals(Event.END_OBJECT, parser.next());
+            assertFalse(parser.hasNext());
+            parser.close();
+        }
+    }
+
+    @Test
+    public void utf8WithBom() {
+        final byte[] json = "{\"\u00e9\":\"b\"}".getBytes(UTF_8);
+        final byte[] bytes = new byte[json.length + 3];
+        bytes[0] = (byte) 0xEF;
+        bytes[1] = (byte) 0xBB;
+        bytes[2] = (byte) 0xBF;
+        System.arraycopy(json, 0, bytes, 3, json.length);
+
+        final JsonParser parser = Json.createParser(new ByteArrayInputStream(bytes));
+        assertEquals(Event.START_OBJECT, parser.next());
+        assertEquals(Event.KEY_NAME, parser.next());
+        assertEquals("\u00e9", parser.getString());
+        assertEquals(Event.VALUE_STRING, parser.next());
+        assertEquals("b", parser.getString());
+        assertEquals(Event.END_OBJECT, parser.next());
+        parser.close();
+    }
+
+    @Test(expected = JsonParsingException.class)
+    public void utf8InvalidSequence() {
+        final JsonParser parser = Json.createParser(new ByteArrayInputStream(new byte[] { '[', '"', (byte) 0xC3, '"', ']' }));
+        assertEquals(Event.START_ARRAY, parser.next());
+        assertEquals(Event.VALUE_STRING, parser.next());
+        parser.getString();
+    }
+
+    @Test
+    public void valueBufferGrowsOnDemand() {
+        final StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            value.append("ab\\n");
+        }
+        final String json = "[\"" + value + "\"," + value.toString().replace("ab\\n", "123") + "]";
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            expected.append("ab\n");
+        }
+
+        final JsonParserFactory factory = Json.createParserFactory(new HashMap<String, Object>() {{
+            put(JsonParserFactoryImpl.VALUE_BUFFER_LENGTH, 2);
+            put(JsonParserFactoryImpl.BUFFER_LENGTH, 7);
+        }});
+        for (final JsonParser parser : asList(factory.createParser(new StringReader(json)),
+                factory.createParser(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")))))) {
+            assertEquals(Event.START_ARRAY, parser.next());
+            assertEquals(Event.VALUE_STRING, parser.next());
+            assertEquals(expected.toString(), parser.getString());
+            assertEquals(Event.VALUE_NUMBER, parser.next());
+            assertEquals(1500, parser.getBigDecimal().precision());
+            assertEquals(Event.END_ARRAY, parser.next());
+            parser.close();
+        }
+    }
+
+    @Test
+    public void valueBufferLimitIsCumulative() {
+        final JsonParserFactory factory = Json.createParserFactory(new HashMap<String, Object>() {{
+            put(JsonParserFactoryImpl.MAX_STRING_LENGTH, 10);
+            put(JsonParserFactoryImpl.VALUE_BUFFER_LENGTH, 2);
+            put(JsonParserFactoryImpl.BUFFER_LENGTH, 4);
+        }});
+
+        // 10 chars (escapes count once) fit
+        for (final String json : asList("[\"0123456789\"]", "[\"\\n12345678\\t\"]")) {
+            final JsonParser parser = factory.createParser(new StringReader(json));
+            assertEquals(Event.START_ARRAY, parser.next());
+            assertEquals(Event.VALUE_STRING, parser.next());
+            assertEquals(10, parser.getString().length());
+            parser.close();
+        }
+
+        // 11 chars don't, even if each buffer part is small
+        for (final String json : asList("[\"0123456789a\"]", "[\"\\n12345678\\t\\n\"]")) {
+            final JsonParser parser = factory.createParser(new StringReader(json));
+            assertEquals(Event.START_ARRAY, parser.next());
+            try {
+                parser.next();
+                fail(json);
+            } catch (final JsonParsingException expected) {
+                // no-op
+            }
+            parser.close();
+        }
+    }
+
+    @Test
+    public void charSequenceAccess() {
+        final String json = "{\"name\":\"a\\tb\",\"caf\u00e9\":\"\u00e9t\u00e9\",\"n\":-12.5e3,\"d\":7,\"\":\"\"}";
+        for (int size = 1; size < json.length() + 2; size++) {
+            final JsonParserFactory factory = Json.createParserFactory(Collections.singletonMap(JsonParserFactoryImpl.BUFFER_LENGTH, size));
+            for (final JsonParser p : asList(factory.createParser(new StringReader(json)),
+                    factory.createParser(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")))))) {
+                final JohnzonJsonParser parser = JohnzonJsonParser.class.cast(p);
+                assertEquals(Event.START_OBJECT, parser.next());
+                assertKey(parser, "name");
+                assertEquals(Event.VALUE_STRING, parser.next());
+                assertEquals("a\tb", parser.getCharSequence().toString());
+                assertEquals('\t', parser.getCharSequence().charAt(1));
+                assertEquals("\tb", parser.getCharSequence().subSequence(1, 3));
+                assertKey(parser, "caf\u00e9");
+                assertEquals(Event.VALUE_STRING, parser.next());
+                assertTrue(parser.isCurrentValue("\u00e9t\u00e9".toCharArray()));
+                assertFalse(parser.isCurrentValue("ete".toCharArray()));
+                assertKey(parser, "n");
+                assertEquals(Event.VALUE_NUMBER, parser.next());
+                assertEquals("-12.5e3", parser.getCharSequence().toString());
+                assertTrue(parser.isCurrentValue("-12.5e3".toCharArray()));
+                assertKey(parser, "d");
+                assertEquals(Event.VALUE_NUMBER, parser.next());
+                assertEquals("7", parser.getCharSequence().toString());
+                assertKey(parser, "");
+                assertEquals(Event.VALUE_STRING, parser.next());
+                assertEquals(0, parser.getCharSequence().length());
+                assertEquals(Event.END_OBJECT, parser.next());
+                parser.close();
+            }
+        }
+    }
+
+    private static void assertKey(final JohnzonJsonParser parser, final String key) {
+        assertEquals(Event.KEY_NAME, parser.next());
+        assertFalse(parser.isCurrentValue((key + "x").toCharArray()));
+        assertTrue(parser.isCurrentValue(key.toCharArray()));
+        assertEquals(key, parser.getCharSequence().toString());
+        assertEquals(key.length(), parser.getCharSequence().length());
+        assertEquals(key, parser.getString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void charSequenceOnStructure() {
+        final JohnzonJsonParser parser = JohnzonJsonParser.class.cast(Json.createParser(new StringReader("[]")));
+        parser.next();
+        parser.getCharSequence();
+    }
+
+    @Test
+    public void skipChildren() {
+        final String json = "{\"skipped\":{\"a\":[1,{\"b\":\"}]\\\"[{\"}],\n\"c\":\"\u00e9\\\\\"},"
+                + "\"kept\":true,\"array\":[[],{},\"]\"],\"last\":5}";
+        for (int size = 1; size < json.length() + 2; size++) {
+            final JsonParserFactory factory = Json.createParserFactory(Collections.singletonMap(JsonParserFactoryImpl.BUFFER_LENGTH, size));
+            for (final JsonParser p : asList(factory.createParser(new StringReader(json)),
+                    factory.createParser(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")))))) {
+                final JohnzonJsonParser parser = JohnzonJsonParser.class.cast(p);
+                assertEquals(Event.START_OBJECT, parser.next());
+                assertEquals(Event.KEY_NAME, parser.next());
+                parser.skipChildren(); // no-op
+                assertEquals("skipped", parser.getString());
+                assertEquals(Event.START_OBJECT, parser.next());
+                parser.skipChildren();
+                assertEquals(2, parser.getLocation().getLineNumber());
+                assertEquals(Event.KEY_NAME, parser.next());
+                assertEquals("kept", parser.getString());
+                assertEquals(Event.VALUE_TRUE, parser.next());
+                assertEquals(Event.KEY_NAME, parser.next());
+                assertEquals(Event.START_ARRAY, parser.next());
+                parser.skipChildren();
+                assertEquals(Event.KEY_NAME, parser.next());
+                assertEquals("last", parser.getString());
+                assertEquals(Event.VALUE_NUMBER, parser.next());
+                assertEquals(5, parser.getInt());
+                assertEquals(Event.END_OBJECT, parser.next());
+                assertFalse(parser.hasNext());
+                parser.close();
+            }
+        }
+    }
+
+    @Test
+    public void skipChildrenWithComments() {
+        final JohnzonJsonParser parser = JohnzonJsonParser.class.cast(Json.createParserFactory(new HashMap<String, Object>() {{
+            put(JsonParserFactoryImpl.SUPPORTS_COMMENTS, true);
+        }}).createParser(new StringReader("[{\"a\": /* } ] */ [1, 2]}, // ]\n 3]")));
+        assertEquals(Event.START_ARRAY, parser.next());
+        assertEquals(Event.START_OBJECT, parser.next());
+        parser.skipChildren();
+        assertEquals(Event.VALUE_NUMBER, parser.next());
+        assertEquals(3, parser.getInt());
+        assertEquals(Event.END_ARRAY, parser.next());
+        parser.close();
+    }
+
+    @Test(expected = JsonParsingException.class)
+    public void skipChildrenMismatch() {
+        final JohnzonJsonParser parser = JohnzonJsonParser.class.cast(Json.createParser(new StringReader("[{\"a\":[1]]")));
+        assertEquals(Event.START_ARRAY, parser.next());
+        assertEquals(Event.START_OBJECT, parser.next());
+        parser.skipChildren();
+    }
+
+    @Test(expected = JsonParsingException.class)
+    public void skipChildrenUnterminated() {
+        final JohnzonJsonParser parser = JohnzonJsonParser.class.cast(Json.createParser(new StringReader("[{\"a\":\"]}")));
+        assertEquals(Event.START_ARRAY, parser.next());
+        parser.skipChildren();
+    }
+
+    @Test
+    public void mappedFile() throws IOException {
+        final String json = "{\"caf\u00e9\":[\"\u20ac\ud83d\ude00\\n\u00e9t\u00e9\",-12.5e3,1234567890123,true,null],"
+                + "\"\u00e9\":{\"a\":\"\\u00e9\\\"\"},\"long\":\"" + repeat("\u00e9abc\u20ac", 50) + "\"}";
+        final byte[] bytes = json.getBytes(Charset.forName("UTF-8"));
+        final File file = writeTempFile(bytes);
+        for (final int window : new int[] { 4, 5, 6, 7, 16, 101, bytes.length, 10000 }) {
+            final JohnzonJsonParserFactory factory = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                    Collections.singletonMap(JsonParserFactoryImpl.MAPPED_WINDOW_LENGTH, window)));
+            assertSameEvents(Json.createParser(new StringReader(json)), factory.createParser(file));
+        }
+    }
+
+    @Test
+    public void mappedFileBench() throws IOException {
+        final JohnzonJsonParserFactory factory = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                Collections.singletonMap(JsonParserFactoryImpl.MAPPED_WINDOW_LENGTH, 4093)));
+        for (final String name : asList("bench/huge_1mb.json", "bench/big_600kb.json", "bench/tiny_50b.json")) {
+            final File file = writeTempFile(readResource(name));
+            final InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
+            assertSameEvents(Json.createParser(stream), factory.createParser(file));
+        }
+    }
+
+    @Test
+    public void mappedFileCharsets() throws IOException {
+        final JohnzonJsonParserFactory factory = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                Collections.<String, Object>emptyMap()));
+        final String json = "{\"\u00e9\":[1,\"\u20ac\"]}";
+        final byte[] utf8 = json.getBytes(Charset.forName("UTF-8"));
+        final byte[] withBom = new byte[utf8.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+        for (final byte[] bytes : asList(withBom, json.getBytes(Charset.forName("UTF-16LE")), json.getBytes(Charset.forName("UTF-32BE")))) {
+            assertSameEvents(Json.createParser(new StringReader(json)), factory.createParser(writeTempFile(bytes)));
+        }
+    }
+
+    @Test(expected = JsonParsingException.class)
+    public void mappedFileTruncated() throws IOException {
+        final JsonParser parser = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(Collections.<String, Object>emptyMap()))
+                .createParser(writeTempFile("{\"a\":[1,".getBytes(Charset.forName("UTF-8"))));
+        while (parser.hasNext()) {
+            parser.next();
+        }
+    }
+
+    @Test
+    public void byteBuffers() {
+        final String json = "{\"caf\u00e9\":[\"\u20ac\ud83d\ude00\\n\u00e9t\u00e9\",-12.5e3,1234567890123,true,null],"
+                + "\"long\":\"" + repeat("\u00e9abc\u20ac", 50) + "\"}";
+        final byte[] bytes = json.getBytes(Charset.forName("UTF-8"));
+        final JohnzonJsonParserFactory factory = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                Collections.<String, Object>emptyMap()));
+
+        final byte[] padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 5, bytes.length);
+        final ByteBuffer heap = ByteBuffer.wrap(padded, 5, bytes.length);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+        direct.put((byte) 0xEF).put((byte) 0xBB).put((byte) 0xBF).put(bytes).flip();
+        final ByteBuffer utf16 = ByteBuffer.allocateDirect(json.length() * 2);
+        utf16.put(json.getBytes(Charset.forName("UTF-16BE"))).flip();
+
+        for (final ByteBuffer buffer : asList(heap, heap.slice(), heap.asReadOnlyBuffer(), direct, utf16)) {
+            final int position = buffer.position();
+            assertSameEvents(Json.createParser(new StringReader(json)), factory.createParser(buffer));
+            assertEquals(position, buffer.position());
+        }
+    }
+
+    @Test
+    public void byteChannels() {
+        final String json = "{\"caf\u00e9\":[\"\u20ac\ud83d\ude00\\n\u00e9t\u00e9\",-12.5e3,1234567890123,true,null],"
+                + "\"long\":\"" + repeat("\u00e9abc\u20ac", 50) + "\"}";
+        final byte[] utf8 = json.getBytes(Charset.forName("UTF-8"));
+        final byte[] withBom = new byte[utf8.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+
+        for (int size = 1; size < 16; size++) {
+            final JohnzonJsonParserFactory factory = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                    Collections.singletonMap(JsonParserFactoryImpl.BUFFER_LENGTH, size)));
+            for (final byte[] bytes : asList(utf8, withBom, json.getBytes(Charset.forName("UTF-16LE")))) {
+                final ReadableByteChannel channel = Channels.newChannel(new AttemptingInputStream(bytes));
+                assertSameEvents(Json.createParser(new StringReader(json)), factory.createParser(channel));
+                assertFalse(channel.isOpen());
+            }
+        }
+    }
+
+    @Test
+    public void nonBlockingChannelsAreRejected() throws IOException {
+        final Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            try {
+                ((JohnzonJsonParserFactory) Json.createParserFactory(Collections.<String, Object>emptyMap())).createParser(pipe.source());
+                fail();
+            } catch (final IllegalArgumentException expected) {
+                assertTrue(pipe.source().isOpen()); // not taken over
+            }
+
+            pipe.source().configureBlocking(true);
+            pipe.sink().write(ByteBuffer.wrap("[true]".getBytes("UTF-8")));
+            pipe.sink().close();
+            final JsonParser parser = ((JohnzonJsonParserFactory) Json.createParserFactory(
+                    Collections.<String, Object>emptyMap())).createParser(pipe.source());
+            assertEquals(asList(Event.START_ARRAY, Event.VALUE_TRUE, Event.END_ARRAY), asList(parser.next(), parser.next(), parser.next()));
+            assertFalse(parser.hasNext());
+            parser.close();
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    @Test
+    public void fileChannelAsByteChannel() throws IOException {
+        final ReadableByteChannel channel = new FileInputStream(writeTempFile("[1,\"\u00e9\"]".getBytes(Charset.forName("UTF-8")))).getChannel();
+        final JsonParser parser = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(Collections.<String, Object>emptyMap()))
+                .createParser(channel);
+        assertEquals(Event.START_ARRAY, parser.next());
+        assertEquals(Event.VALUE_NUMBER, parser.next());
+        assertEquals(Event.VALUE_STRING, parser.next());
+        assertEquals("\u00e9", parser.getString());
+        assertEquals(Event.END_ARRAY, parser.next());
+        parser.close();
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void asyncParser() {
+        final String json = "{\"caf\u00e9\":[\"\u20ac\ud83d\ude00\\n\\ud83d\\ude00\u00e9t\u00e9\",-12.5e3,1234567890123,true,false,null,0],"
+                + "\"\u00e9\":{\"a\":\"\\u00e9\\\"\"} , \"long\" : \"" + repeat("\u00e9abc\u20ac", 50) + "\",\"e\":{}}";
+        final byte[] utf8 = json.getBytes(Charset.forName("UTF-8"));
+        final byte[] withBom = new byte[utf8.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+
+        for (final byte[] bytes : asList(utf8, withBom)) {
+            // offsets are counted in bytes like for the stream parser
+            final List<String> expected = events(Json.createParser(new ByteArrayInputStream(bytes)));
+            for (int chunk = 1; chunk < bytes.length + 1; chunk++) {
+                assertEquals("chunk " + chunk, expected, asyncEvents(Collections.<String, Object>singletonMap(
+                        JsonParserFactoryImpl.BUFFER_LENGTH, 7), bytes, chunk));
+            }
+        }
+    }
+
+    @Test
+    public void asyncParserBench() {
+        final byte[] bytes;
+        try {
+            bytes = readResource("bench/huge_1mb.json");
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        assertEquals(events(Json.createParser(new ByteArrayInputStream(bytes))),
+                asyncEvents(Collections.<String, Object>emptyMap(), bytes, 4093));
+    }
+
+    @Test
+    public void asyncParserPartialInput() {
+        final JohnzonJsonAsyncParser parser = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                Collections.<String, Object>emptyMap())).createAsyncParser();
+        parser.feed(ByteBuffer.wrap("[tr".getBytes(Charset.forName("UTF-8"))));
+        assertEquals(Event.START_ARRAY, parser.poll());
+        assertEquals(JohnzonJsonAsyncParser.NEED_MORE_INPUT, parser.poll());
+        parser.feed(ByteBuffer.wrap("ue,12".getBytes(Charset.forName("UTF-8"))));
+        assertEquals(Event.VALUE_TRUE, parser.poll());
+        assertEquals(JohnzonJsonAsyncParser.NEED_MORE_INPUT, parser.poll()); // 12 could be 123
+        parser.feed(ByteBuffer.wrap(",{\"a\":[1".getBytes(Charset.forName("UTF-8"))));
+        assertEquals(Event.VALUE_NUMBER, parser.poll());
+        assertEquals(12, parser.getInt());
+        assertEquals(Event.START_OBJECT, parser.poll());
+        try {
+            parser.skipChildren();
+            fail();
+        } catch (final IllegalStateException expected) {
+            // no-op
+        }
+        parser.feed(ByteBuffer.wrap("]}]".getBytes(Charset.forName("UTF-8"))));
+        parser.skipChildren();
+        assertEquals(Event.END_ARRAY, parser.poll());
+        assertEquals(JohnzonJsonAsyncParser.NEED_MORE_INPUT, parser.poll());
+        parser.endOfInput();
+        assertFalse(parser.hasNext());
+        parser.close();
+    }
+
+    @Test
+    public void asyncParserEndOfDocument() {
+        final JsonParserFactory factory = Json.createParserFactory(Collections.<String, Object>emptyMap());
+        final JohnzonJsonAsyncParser parser = JohnzonJsonParserFactory.class.cast(factory).createAsyncParser();
+        parser.feed(ByteBuffer.wrap("[1]   ".getBytes(Charset.forName("UTF-8"))));
+        final List<Event> events = new ArrayList<Event>();
+        Event event;
+        while (parser.hasNext() && (event = parser.poll()) != JohnzonJsonAsyncParser.NEED_MORE_INPUT) {
+            events.add(event);
+        }
+        assertEquals(asList(Event.START_ARRAY, Event.VALUE_NUMBER, Event.END_ARRAY), events);
+        assertFalse(parser.hasNext()); // the trailing whitespace can still grow, it is not read yet
+        assertEquals(JohnzonJsonAsyncParser.NEED_MORE_INPUT, parser.poll());
+        parser.endOfInput();
+        assertFalse(parser.hasNext());
+        try {
+            parser.poll();
+            fail();
+        } catch (final NoSuchElementException expected) {
+            // no-op
+        }
+        parser.close();
+
+        final JohnzonJsonAsyncParser garbage = JohnzonJsonParserFactory.class.cast(factory).createAsyncParser();
+        garbage.feed(ByteBuffer.wrap("[1]  x".getBytes(Charset.forName("UTF-8"))));
+        while (garbage.hasNext() && garbage.poll() != JohnzonJsonAsyncParser.NEED_MORE_INPUT) {
+            // consume the document
+        }
+        garbage.endOfInput();
+        try {
+            garbage.hasNext();
+            fail();
+        } catch (final JsonParsingException expected) {
+            // no-op
+        }
+        garbage.close();
+    }
+
+    @Test(expected = JsonParsingException.class)
+    public void asyncParserTruncated() {
+        final JohnzonJsonAsyncParser parser = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                Collections.<String, Object>emptyMap())).createAsyncParser();
+        parser.feed(ByteBuffer.wrap("[\"abc".getBytes(Charset.forName("UTF-8"))));
+        assertEquals(Event.START_ARRAY, parser.poll());
+        assertEquals(JohnzonJsonAsyncParser.NEED_MORE_INPUT, parser.poll());
+        parser.endOfInput();
+        parser.poll();
+    }
+
+    @Test(expected = JsonParsingException.class)
+    public void asyncParserDosProtected() {
+        final JohnzonJsonAsyncParser parser = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                Collections.singletonMap(JsonParserFactoryImpl.MAX_STRING_LENGTH, 10))).createAsyncParser();
+        parser.feed(ByteBuffer.wrap("[\"".getBytes(Charset.forName("UTF-8"))));
+        assertEquals(Event.START_ARRAY, parser.poll());
+        for (int i = 0; i < 100; i++) {
+            parser.feed(ByteBuffer.wrap("aaaaaaaaaa".getBytes(Charset.forName("UTF-8"))));
+            assertEquals(JohnzonJsonAsyncParser.NEED_MORE_INPUT, parser.poll());
+        }
+    }
+
+    @Test
+    public void stringScanAroundSpecialChars() {
+        for (int length = 0; length < 20; length++) {
+            for (int special = 0; special <= length; special++) {
+                final String value = repeat("a", special) + "\\\"\u00e9" + repeat("b", length - special);
+                final String json = "[\"" + value + "\",\"" + repeat("c", length) + "\"]";
+                final String expected = value.replace("\\\"", "\"");
+                for (int size = 1; size < 12; size++) {
+                    final JohnzonJsonParserFactory factory = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(
+                            Collections.singletonMap(JsonParserFactoryImpl.BUFFER_LENGTH, size)));
+                    final byte[] bytes = json.getBytes(Charset.forName("UTF-8"));
+                    for (final JsonParser parser : asList(factory.createParser(new StringReader(json)),
+                            factory.createParser(new ByteArrayInputStream(bytes)), factory.createParser(ByteBuffer.wrap(bytes)))) {
+                        assertEquals(Event.START_ARRAY, parser.next());
+                        assertEquals(Event.VALUE_STRING, parser.next());
+                        assertEquals(expected, parser.getString());
+                        assertEquals(Event.VALUE_STRING, parser.next());
+                        assertEquals(length, parser.getString().length());
+                        assertEquals(Event.END_ARRAY, parser.next());
+                        parser.close();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void getDouble() {
+        final List<String> numbers = new ArrayList<String>(asList("0", "-0", "-0.0", "7", "-12", "0.1", "-1.5", "3.14159", "1.10",
+                "1e22", "1e23", "1E-22", "2.5e-3", "1.7976931348623157e308", "4.9e-324", "9007199254740993", "9007199254740992.5",
+                "123456789012345678901234567890", "0.30000000000000004", "1.0000000000000002", "2.2250738585072014E-308", "0e100"));
+        final java.util.Random random = new java.util.Random(1234);
+        for (int i = 0; i < 2000; i++) {
+            numbers.add(Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20)));
+            numbers.add(Long.toString(random.nextInt(1000000)) + "." + random.nextInt(1000));
+        }
+
+        for (final String number : numbers) {
+            final String json = "[" + number + "]";
+            for (final JsonParser p : asList(Json.createParser(new StringReader(json)),
+                    Json.createParser(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8")))))) {
+                final JohnzonJsonParser parser = JohnzonJsonParser.class.cast(p);
+                parser.next();
+                assertEquals(Event.VALUE_NUMBER, parser.next());
+                final double expected = Double.parseDouble(number);
+                assertEquals(number, Double.doubleToLongBits(expected), Double.doubleToLongBits(parser.getDouble()));
+                assertEquals(number, new BigDecimal(number), parser.getBigDecimal());
+                parser.close();
+            }
+        }
+    }
+
+    private static List<String> asyncEvents(final Map<String, ?> config, final byte[] bytes, final int chunk) {
+        final JohnzonJsonAsyncParser parser = JohnzonJsonParserFactory.class.cast(Json.createParserFactory(config)).createAsyncParser();
+        final List<String> events = new ArrayList<String>();
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            parser.feed(bytes, offset, Math.min(chunk, bytes.length - offset));
+            Event event;
+            while ((event = parser.poll()) != JohnzonJsonAsyncParser.NEED_MORE_INPUT) {
+                events.add(event(parser, event));
+            }
+        }
+        parser.endOfInput();
+        while (parser.hasNext()) {
+            events.add(event(parser, parser.poll()));
+        }
+        parser.close();
+        return events;
+    }
+
+    private static List<String> events(final JsonParser parser) {
+        final List<String> events = new ArrayList<String>();
+        while (parser.hasNext()) {
+            events.add(event(parser, parser.next()));
+        }
+        parser.close();
+        return events;
+    }
+
+    private static String event(final JsonParser parser, final Event event) {
+        if (event == Event.KEY_NAME || event == Event.VALUE_STRING || event == Event.VALUE_NUMBER) {
+            return event + ":" + parser.getString() + "@" + parser.getLocation().getStreamOffset();
+        }
+        return event + "@" + parser.getLocation().getStreamOffset();
+    }
+
+    private static void assertSameEvents(final JsonParser expected, final JsonParser actual) {
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            final Event event = expected.next();
+            assertEquals(event, actual.next());
+            if (event == Event.KEY_NAME || event == Event.VALUE_STRING || event == Event.VALUE_NUMBER) {
+                assertEquals(expected.getString(), actual.getString());
+            }
+            if (event == Event.VALUE_NUMBER) {
+                assertEquals(expected.getBigDecimal(), actual.getBigDecimal());
+            }
+        }
+        assertFalse(actual.hasNext());
+        expected.close();
+        actual.close();
+    }
+
+    private static File writeTempFile(final byte[] bytes) throws IOException {
+        final File file = File.createTempFile("johnzon-parser-", ".json");
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] readResource(final String name) throws IOException {
+        final InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(name);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String repeat(final String value, final int times) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
     class AttemptingInputStream extends ByteArrayInputStream {
 
         public AttemptingInputStream(byte[] buf) {
@@ -18,15 +18,22 @@
  */
 package org.apache.johnzon.core;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashMap;
@@ -34,9 +41,13 @@ import java.util.Map;
 
 import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
 import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParsingException;
 
 import org.junit.Test;
 
@@ -464,4 +475,176 @@ public class JsonReaderImplTest {
         assertEquals("fdmcd", object.getJsonObject("//object").getString("sub"));
         reader.close();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void symbolTableSharesKeys() {
+        final String json = "[{\"id\":1,\"n\u00e4me\":\"a\"},{\"id\":2,\"n\u00e4me\":\"b\"}]";
+        for (final boolean comments : new boolean[] { false, true }) {
+            final JsonReaderFactory factory = Json.createReaderFactory(new HashMap<String, Object>() {{
+                put("org.apache.johnzon.symbol-table-size", 1024);
+                put("org.apache.johnzon.supports-comments", comments);
+            }});
+            final JsonArray fromStream = factory.createReader(new ByteArrayInputStream(json.getBytes(utf8Charset))).readArray();
+            final JsonArray fromReader = factory.createReader(new StringReader(json)).readArray();
+            final String[] keys = fromStream.getJsonObject(0).keySet().toArray(new String[2]);
+            for (final JsonArray array : asList(fromStream, fromReader)) {
+                for (int i = 0; i < array.size(); i++) {
+                    final JsonObject object = array.getJsonObject(i);
+                    assertEquals(i + 1, object.getInt("id"));
+                    final String[] objectKeys = object.keySet().toArray(new String[2]);
+                    assertSame(keys[0], objectKeys[0]);
+                    assertSame(keys[1], objectKeys[1]);
+                }
+            }
+            assertEquals("n\u00e4me", keys[1]);
+        }
+    }
+
+    @Test
+    public void decimals() {
+        final JsonArray array = Json.createReader(new StringReader("[1.10,-0.5,2.5e-3,1E+2,0.1,-0.0,12345678901234567.5]")).readArray();
+        final String[] expected = { "1.10", "-0.5", "2.5e-3", "1E+2", "0.1", "-0.0", "12345678901234567.5" };
+        for (int i = 0; i < expected.length; i++) {
+            final JsonNumber number = array.getJsonNumber(i);
+            assertEquals(new BigDecimal(expected[i]), number.bigDecimalValue());
+            assertEquals(new BigDecimal(expected[i]).toString(), number.toString());
+            assertEquals(new BigDecimal(expected[i]).doubleValue(), number.doubleValue(), 0);
+            assertEquals(new JsonNumberImpl(new BigDecimal(expected[i])), number);
+            assertEquals(new JsonNumberImpl(new BigDecimal(expected[i])).hashCode(), number.hashCode());
+            assertEquals(new BigDecimal(expected[i]).scale() == 0, number.isIntegral());
+        }
+    }
+
+    @Test
+    public void indexedReaderReadsLikeReader() {
+        final JsonReaderFactory indexed = Json.createReaderFactory(Collections.singletonMap(JsonReaderFactoryImpl.INDEXED_READER, true));
+        for (final String name : asList("array", "bigdecimal", "empty", "emptyarray", "escaping", "nested", "simple", "simple2",
+                "special", "stringescape", "unicode")) {
+            final String resource = "json/" + name + ".json";
+            final JsonStructure expected = Json.createReader(
+                    Thread.currentThread().getContextClassLoader().getResourceAsStream(resource)).read();
+            final JsonStructure actual = indexed.createReader(
+                    Thread.currentThread().getContextClassLoader().getResourceAsStream(resource)).read();
+            assertEquals(resource, expected, actual);
+            assertEquals(resource, expected.toString(), actual.toString());
+            assertEquals(resource, expected.hashCode(), actual.hashCode());
+        }
+    }
+
+    @Test
+    public void indexedReaderCreatesValuesOnAccess() {
+        final JsonReaderFactory indexed = Json.createReaderFactory(new HashMap<String, Object>() {{
+            put(JsonReaderFactoryImpl.INDEXED_READER, true);
+            put("org.apache.johnzon.supports-comments", true);
+        }});
+        final StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"price\":").append(i).append(".5,\"tags\":[\"t").append(i)
+                    .append("\",null,true]}");
+        }
+        json.append("], /*comment*/ \"esc\\\"aped\":\"a\\nb\",\"big\":123456789012345678901234567890,\"e\":{},\"last\":false}");
+
+        final JsonObject object = indexed.createReader(new StringReader(json.toString())).readObject();
+        assertEquals(5, object.size());
+        assertEquals("a\nb", object.getString("esc\"aped"));
+        assertEquals(new BigDecimal("123456789012345678901234567890"), object.getJsonNumber("big").bigDecimalValue());
+        assertTrue(object.getJsonObject("e").isEmpty());
+        assertEquals(false, object.getBoolean("last"));
+        assertNull(object.get("missing"));
+
+        final JsonArray items = object.getJsonArray("items");
+        assertEquals(100, items.size());
+        final JsonObject item = items.getJsonObject(42);
+        assertEquals(42, item.getInt("id"));
+        assertEquals(42.5, item.getJsonNumber("price").doubleValue(), 0);
+        assertEquals("t42", item.getJsonArray("tags").getString(0));
+        assertTrue(item.getJsonArray("tags").isNull(1));
+        assertSame(item, items.getJsonObject(42));
+        assertEquals(Json.createReader(new StringReader(json.toString().replace("/*comment*/", ""))).readObject(), object);
+    }
+
+    @Test
+    public void indexedReaderMergesDuplicatedKeys() {
+        final JsonReaderFactory indexed = Json.createReaderFactory(Collections.singletonMap(JsonReaderFactoryImpl.INDEXED_READER, true));
+        final StringBuilder large = new StringBuilder("{");
+        for (int i = 0; i < 12; i++) {
+            large.append("\"k").append(i).append("\":").append(i).append(',');
+        }
+        large.append("\"k1\":\"last\",\"k\\u0032\":true}");
+        for (final String json : asList("{\"a\":1,\"b\":2,\"a\":3}", "{\"a\":1,\"\\u0061\":[2]}", large.toString())) {
+            final JsonObject expected = Json.createReader(new StringReader(json)).readObject();
+            final JsonObject actual = indexed.createReader(new StringReader(json)).readObject();
+            assertEquals(json, expected.size(), actual.size());
+            assertEquals(json, expected.keySet(), actual.keySet());
+            assertEquals(json, expected, actual);
+            assertEquals(json, expected.toString(), actual.toString());
+            for (final String key : expected.keySet()) {
+                assertEquals(json, expected.get(key), actual.get(key));
+            }
+        }
+    }
+
+    @Test(expected = JsonParsingException.class)
+    public void indexedReaderFailsOnInvalidDocument() {
+        Json.createReaderFactory(Collections.singletonMap(JsonReaderFactoryImpl.INDEXED_READER, true))
+                .createReader(new StringReader("{\"a\":[1,2}")).readObject();
+    }
+
+    @Test
+    public void numberArrays() {
+        final JsonObject object = Json.createReader(new StringReader("{\"longs\":[1,-2,1700000000000000000,9],"
+                + "\"decimals\":[1.5,-2,3.10,1e2],\"mixed\":[1,2.5,\"a\"],\"huge\":[1,9007199254740993,0.5],"
+                + "\"exact\":[0.1,1234567890123456789012345678.5],\"nested\":[[1,2],[0.5]]}")).readObject();
+
+        final JohnzonJsonNumberArray longs = JohnzonJsonNumberArray.class.cast(object.getJsonArray("longs"));
+        assertArrayEquals(new long[] { 1, -2, 1700000000000000000L, 9 }, longs.toLongArray());
+        assertEquals(1700000000000000000L, longs.getJsonNumber(2).longValue());
+        assertEquals(new JsonLongImpl(-2), longs.get(1));
+
+        final JohnzonJsonNumberArray decimals = JohnzonJsonNumberArray.class.cast(object.getJsonArray("decimals"));
+        assertArrayEquals(new double[] { 1.5, -2, 3.1, 100 }, decimals.toDoubleArray(), 0);
+        assertArrayEquals(new long[] { 1, -2, 3, 100 }, decimals.toLongArray());
+        assertEquals("3.10", decimals.getJsonNumber(2).toString());
+        assertEquals(new BigDecimal("1e2"), decimals.getJsonNumber(3).bigDecimalValue());
+        assertEquals("[1.5,-2,3.10,1E+2]", decimals.toString());
+
+        final JsonArray nested = object.getJsonArray("nested");
+        assertTrue(nested.get(0) instanceof JohnzonJsonNumberArray);
+        assertTrue(nested.get(1) instanceof JohnzonJsonNumberArray);
+
+        for (final String name : asList("mixed", "huge", "exact")) {
+            assertFalse(name, object.get(name) instanceof JohnzonJsonNumberArray);
+        }
+        assertEquals("a", object.getJsonArray("mixed").getString(2));
+        assertEquals(new BigDecimal("9007199254740993"), object.getJsonArray("huge").getJsonNumber(1).bigDecimalValue());
+        assertEquals(new BigDecimal("1234567890123456789012345678.5"), object.getJsonArray("exact").getJsonNumber(1).bigDecimalValue());
+
+        final JsonArray built = Json.createArrayBuilder().add(1).add(-2).add(1700000000000000000L).add(9).build();
+        assertEquals(built, longs);
+        assertEquals(longs, built);
+        assertEquals(built.hashCode(), longs.hashCode());
+    }
+
+    @Test
+    public void stringTableSharesValues() {
+        final String json = "[{\"status\":\"OK\",\"country\":\"D\u00e9\"},{\"status\":\"OK\",\"country\":\"D\u00e9\"},\"OK\"]";
+        for (final boolean indexed : new boolean[] { false, true }) {
+            final JsonReaderFactory factory = Json.createReaderFactory(new HashMap<String, Object>() {{
+                put(JsonReaderFactoryImpl.STRING_TABLE_SIZE, 1024);
+                put(JsonReaderFactoryImpl.INDEXED_READER, indexed);
+            }});
+            final JsonArray fromStream = factory.createReader(new ByteArrayInputStream(json.getBytes(utf8Charset))).readArray();
+            final JsonArray fromReader = factory.createReader(new StringReader(json)).readArray();
+            final JsonValue ok = fromStream.getJsonObject(0).get("status");
+            for (final JsonArray array : asList(fromStream, fromReader)) {
+                for (int i = 0; i < 2; i++) {
+                    assertSame(ok, array.getJsonObject(i).get("status"));
+                    assertSame(fromStream.getJsonObject(0).get("country"), array.getJsonObject(i).get("country"));
+                }
+                assertSame(ok, array.get(2));
+            }
+            assertEquals("D\u00e9", fromReader.getJsonObject(1).getString("country"));
+            assertEquals(Json.createReader(new StringReader(json)).readArray(), fromReader);
+        }
+    }
+}
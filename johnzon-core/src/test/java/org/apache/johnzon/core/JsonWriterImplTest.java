@@ -21,10 +21,17 @@ package org.apache.johnzon.core;
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.json.Json;
+import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
 
 import org.junit.Test;
 
@@ -39,4 +46,49 @@ public class JsonWriterImplTest {
         writer.close();
         assertEquals("{\"a\":\"b\"}", new String(out.toByteArray()));
     }
+
+    @Test
+    public void serializedFormCache() throws Exception {
+        final JsonObject catalog = Json.createObjectBuilder()
+                .add("na\"me", "v\u00e4lue\n\u20ac")
+                .add("items", Json.createArrayBuilder().add(1).add(2.5).add(true).addNull().add(Json.createObjectBuilder().add("x", "y")))
+                .build();
+        final String expected = write(Json.createWriterFactory(null), catalog);
+
+        final Map<String, Object> config = new HashMap<String, Object>();
+        config.put(JsonGeneratorFactoryImpl.SERIALIZED_FORM_CACHE, true);
+        final JsonWriterFactory factory = Json.createWriterFactory(config);
+        assertEquals(expected, write(factory, catalog));
+        assertEquals(expected, write(factory, catalog));
+
+        //as member of an array or object, with a SINGLETON buffer the form is not created in the buffer being written
+        config.put(JsonGeneratorFactoryImpl.BUFFER_STRATEGY, "singleton");
+        final JsonGeneratorFactory generatorFactory = Json.createGeneratorFactory(config);
+        final String document = "{\"first\":" + expected + ",\"list\":[" + expected + "," + expected + "]}";
+        for (int i = 0; i < 2; i++) {
+            final StringWriter out = new StringWriter();
+            final JsonGenerator generator = generatorFactory.createGenerator(out);
+            generator.writeStartObject().write("first", catalog).writeStartArray("list").write(catalog).write(catalog).writeEnd().writeEnd().close();
+            assertEquals(document, out.toString());
+
+            //OutputStream generators copy the cached UTF-8 bytes
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final JsonGenerator utf8 = generatorFactory.createGenerator(bytes);
+            utf8.writeStartObject().write("first", catalog).writeStartArray("list").write(catalog).write(catalog).writeEnd().writeEnd().close();
+            assertEquals(document, new String(bytes.toByteArray(), "UTF-8"));
+        }
+
+        //forms are kept by identity, an equal structure with another member order gets its own
+        final JsonObject reordered = Json.createObjectBuilder().add("items", catalog.getJsonArray("items")).add("na\"me", catalog.get("na\"me")).build();
+        assertEquals(catalog, reordered);
+        assertEquals(write(Json.createWriterFactory(null), reordered), write(factory, reordered));
+    }
+
+    private static String write(final JsonWriterFactory factory, final JsonObject object) {
+        final StringWriter out = new StringWriter();
+        final JsonWriter writer = factory.createWriter(out);
+        writer.writeObject(object);
+        writer.close();
+        return out.toString();
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import java.io.Writer;
+import java.util.Collections;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+
+import org.junit.Test;
+
+//Not run by the build (surefire only picks *Test), run it with mvn test -Dtest=KeyCacheBenchmark.
+//Writes mapper like documents (10 objects of 8 keys each) to a writer dropping the output,
+//without the key cache (size 0) and with the default one, see JsonGeneratorFactoryImpl.KEY_CACHE_SIZE.
+public class KeyCacheBenchmark {
+    private static final int DOCUMENTS = Integer.getInteger("johnzon.benchmark.documents", 200000);
+    private static final int ROUNDS = Integer.getInteger("johnzon.benchmark.rounds", 5);
+    private static final String[] KEYS = {
+        "id", "firstName", "lastName", "email", "createdAt", "updatedAt", "status", "description"
+    };
+
+    @Test
+    public void mapperLikeOutput() {
+        System.out.println("KeyCacheBenchmark: " + DOCUMENTS + " documents");
+        for (final int cacheSize : new int[] { 0, JsonGeneratorFactoryImpl.DEFAULT_KEY_CACHE_SIZE }) {
+            final JsonGeneratorFactory factory = Json.createGeneratorFactory(
+                    Collections.singletonMap(JsonGeneratorFactoryImpl.KEY_CACHE_SIZE, cacheSize));
+            for (int round = 0; round < ROUNDS; round++) {
+                final long start = System.nanoTime();
+                for (int i = 0; i < DOCUMENTS; i++) {
+                    write(factory.createGenerator(NullWriter.INSTANCE), i);
+                }
+                System.out.println("key cache size " + cacheSize + ": " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+        }
+    }
+
+    private static void write(final JsonGenerator generator, final int document) {
+        generator.writeStartArray();
+        for (int i = 0; i < 10; i++) {
+            generator.writeStartObject()
+                    .write(KEYS[0], document * 10 + i)
+                    .write(KEYS[1], "John")
+                    .write(KEYS[2], "Doe")
+                    .write(KEYS[3], "john.doe@example.com")
+                    .write(KEYS[4], 1500000000000L)
+                    .write(KEYS[5], 1500000000000L)
+                    .write(KEYS[6], true)
+                    .write(KEYS[7], "a short description")
+                    .writeEnd();
+        }
+        generator.writeEnd().close();
+    }
+
+    private static class NullWriter extends Writer {
+        private static final NullWriter INSTANCE = new NullWriter();
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            // dropped
+        }
+
+        @Override
+        public void flush() {
+            // no-op
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    }
+}
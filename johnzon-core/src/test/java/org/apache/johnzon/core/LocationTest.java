@@ -20,8 +20,13 @@ package org.apache.johnzon.core;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 import javax.json.Json;
 import javax.json.JsonReader;
@@ -135,6 +140,57 @@ public class LocationTest {
        
     }*/
     
+    @Test
+    public void locationOnNonAsciiInput() throws Exception {
+        final String json = "[\"\u00e9\u00e9\u00e9\", \"x\",\n {\"\u00fc\ud83d\ude00\": \"\u20ac\"},\n \"caf\u00e9\"]";
+        final List<JsonLocation> expected = locations(Json.createParser(new StringReader(json)));
+        assertEquals(new JsonLocationImpl(1, 12, 11), expected.get(2)); // after "x"
+        assertEquals(new JsonLocationImpl(2, 13, 25), expected.get(5)); // after the euro sign
+
+        final byte[] bytes = json.getBytes("UTF-8");
+        for (final int bufferLength : new int[] { 5, 64 * 1024 }) {
+            final JohnzonJsonParserFactory factory = (JohnzonJsonParserFactory) Json.createParserFactory(
+                    Collections.<String, Object>singletonMap(JsonParserFactoryImpl.BUFFER_LENGTH, bufferLength));
+            assertEquals(expected, locations(factory.createParser(new ByteArrayInputStream(bytes))));
+            assertEquals(expected, locations(factory.createParser(ByteBuffer.wrap(bytes))));
+            final JohnzonJsonAsyncParser async = factory.createAsyncParser();
+            for (int i = 0; i < bytes.length; i += 3) {
+                async.feed(bytes, i, Math.min(3, bytes.length - i));
+            }
+            async.endOfInput();
+            assertEquals(expected, locations(async));
+        }
+
+        // errors are reported at the same location too
+        final String invalid = "[\"\u00e9\u00e9\",\n \"\ud83d\ude00\" x]";
+        final JsonLocation error = errorLocation(Json.createParser(new StringReader(invalid)));
+        assertEquals(2, error.getLineNumber());
+        assertEquals(error, errorLocation(Json.createParser(new ByteArrayInputStream(invalid.getBytes("UTF-8")))));
+    }
+
+    private static List<JsonLocation> locations(final JsonParser parser) {
+        final List<JsonLocation> locations = new ArrayList<JsonLocation>();
+        while (parser.hasNext()) {
+            parser.next();
+            locations.add(parser.getLocation());
+        }
+        parser.close();
+        return locations;
+    }
+
+    private static JsonLocation errorLocation(final JsonParser parser) {
+        try {
+            while (parser.hasNext()) {
+                parser.next();
+            }
+            throw new AssertionError("invalid json was parsed");
+        } catch (final JsonParsingException e) {
+            return e.getLocation();
+        } finally {
+            parser.close();
+        }
+    }
+
     @Test
     public void simpleLocationCrossingBufferBoundaries() {
  
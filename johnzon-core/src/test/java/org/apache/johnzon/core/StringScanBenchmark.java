@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.johnzon.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+
+import org.junit.Test;
+
+//Not run by the build (surefire only picks *Test), run it with mvn test -Dtest=StringScanBenchmark.
+//Parses a string heavy document (long descriptions and base64 blobs, about 7 MB) from UTF-8 bytes, chars and a ByteBuffer,
+//the paths of the bulk scan of the ordinary string chars (skipStringChars()).
+public class StringScanBenchmark {
+    private static final int DOCUMENTS = Integer.getInteger("johnzon.benchmark.documents", 20);
+    private static final int ROUNDS = Integer.getInteger("johnzon.benchmark.rounds", 5);
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void stringHeavyDocument() throws Exception {
+        final String json = document();
+        final byte[] bytes = json.getBytes(UTF8);
+        final char[] chars = json.toCharArray();
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final JohnzonJsonParserFactory factory = (JohnzonJsonParserFactory) Json.createParserFactory(
+                Collections.<String, Object>emptyMap());
+        final int strings = strings(factory.createParser(new CharArrayReader(chars)));
+        System.out.println("StringScanBenchmark: " + bytes.length + " bytes, " + strings + " strings, " + DOCUMENTS + " parses");
+
+        for (final String input : new String[] { "UTF-8 bytes", "chars", "ByteBuffer" }) {
+            for (int round = 0; round < ROUNDS; round++) {
+                final long start = System.nanoTime();
+                for (int i = 0; i < DOCUMENTS; i++) {
+                    final JsonParser parser;
+                    if ("chars".equals(input)) {
+                        parser = factory.createParser(new CharArrayReader(chars));
+                    } else if ("ByteBuffer".equals(input)) {
+                        parser = factory.createParser(buffer);
+                    } else {
+                        parser = factory.createParser(new ByteArrayInputStream(bytes));
+                    }
+                    assertEquals(strings, strings(parser));
+                }
+                System.out.println(input + ": " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+        }
+    }
+
+    private static int strings(final JsonParser parser) {
+        int strings = 0;
+        while (parser.hasNext()) {
+            if (parser.next() == JsonParser.Event.VALUE_STRING) {
+                parser.getString();
+                strings++;
+            }
+        }
+        parser.close();
+        return strings;
+    }
+
+    //mostly ordinary chars, some non ascii ones and a few escapes like real descriptions
+    private static String document() {
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        final StringBuilder blob = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            blob.append(alphabet.charAt((i * 31 + 7) % alphabet.length()));
+        }
+        final StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            description.append("Une description assez longue, caf\u00e9 cr\u00e8me et \\\"citations\\\" ligne ").append(i).append(". ");
+        }
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() < 7 * 1024 * 1024; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"description\":\"").append(description)
+                    .append("\",\"blob\":\"").append(blob).append("\"}");
+        }
+        return json.append(']').toString();
+    }
+}